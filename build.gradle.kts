@@ -9,6 +9,7 @@ plugins {
 	id("com.gradleup.shadow").version("8.3.3")
 	id("com.modrinth.minotaur").version("2.+")
 	id("net.darkhax.curseforgegradle").version("1.1.+")
+	id("me.champeau.jmh").version("0.7.2")
 }
 
 base.archivesName.set(Constants.NAME)
@@ -75,8 +76,43 @@ tasks.processResources {
 	}
 }
 
+// The optional vectorized dynamic lighting kernel uses the incubating Vector API, it is compiled on its own
+// so the rest of the mod doesn't need the incubating module, nor gets the warning javac prints whenever it is used.
+val vector: SourceSet by sourceSets.creating {
+	compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+}
+
+sourceSets.main {
+	runtimeClasspath += vector.output
+}
+
+dependencies {
+	"jmhRuntimeOnly"(vector.output)
+}
+
+tasks.named<JavaCompile>(vector.compileJavaTaskName) {
+	options.compilerArgs.add("--add-modules=jdk.incubator.vector")
+}
+
+tasks.jar {
+	from(vector.output)
+}
+
+jmh {
+	// Run with -Plambdynlights.jmh.vectorized to benchmark the vectorized dynamic lighting kernel.
+	jvmArgs.add("--add-modules=jdk.incubator.vector")
+	if (project.hasProperty("lambdynlights.jmh.vectorized")) {
+		jvmArgs.add("-Dlambdynlights.engine.vectorized=true")
+	}
+	// Run with -Plambdynlights.jmh.gc to report the allocation rate of the benchmarks.
+	if (project.hasProperty("lambdynlights.jmh.gc")) {
+		profilers.add("gc")
+	}
+}
+
 tasks.shadowJar {
 	dependsOn(tasks.jar)
+	from(vector.output)
 	configurations = listOf(project.configurations["shadow"])
 	destinationDirectory.set(file("${project.layout.buildDirectory.get()}/devlibs"))
 	archiveClassifier.set("dev")
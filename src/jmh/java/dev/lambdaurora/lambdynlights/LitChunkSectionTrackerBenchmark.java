@@ -0,0 +1,108 @@
+/*
+ * Copyright © 2024 LambdAurora <email@lambdaurora.dev>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the Lambda License. For more information,
+ * see the LICENSE file.
+ */
+
+package dev.lambdaurora.lambdynlights;
+
+import dev.lambdaurora.lambdynlights.engine.DynamicLightingEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * Measures the update of the chunk sections lit up by a moving light source, which entities run on every light update.
+ * <p>
+ * The light source walks in circles so it keeps crossing chunk section boundaries,
+ * each step being just above the distance an entity has to move to be updated.
+ * <p>
+ * Once warmed up the update must allocate nothing, the benchmark fails once measured if a full lap of the path allocated anything.
+ * The GC profiler gives more details: {@code ./gradlew jmh -Plambdynlights.jmh.gc},
+ * the {@code gc.alloc.rate.norm} of this benchmark should be about {@code 0}.
+ *
+ * @author LambdAurora
+ * @version 3.3.0
+ * @since 3.3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LitChunkSectionTrackerBenchmark {
+	private static final int STEPS = 1024;
+	private static final double STEP = 0.15;
+
+	@Param({"7", "15"})
+	public int luminance;
+	@Param({"7.75", "15"})
+	public double radius;
+
+	private final DynamicLightingEngine engine = new DynamicLightingEngine();
+	private final LitChunkSectionTracker tracker = new LitChunkSectionTracker();
+	private final double[] path = new double[STEPS * 3];
+	private int step = 0;
+	private long rebuilds = 0;
+	private LongConsumer rebuildCounter;
+
+	@Setup
+	public void setup() {
+		// A circle around a chunk section corner, whose perimeter is the whole path.
+		double circleRadius = STEPS * STEP / (2 * Math.PI);
+
+		for (int i = 0; i < STEPS; i++) {
+			double angle = 2 * Math.PI * i / STEPS;
+			this.path[i * 3] = 64 + circleRadius * Math.cos(angle);
+			this.path[i * 3 + 1] = 72.62;
+			this.path[i * 3 + 2] = 64 + circleRadius * Math.sin(angle);
+		}
+
+		this.rebuildCounter = sectionPos -> this.rebuilds++;
+	}
+
+	@Benchmark
+	public boolean update() {
+		int step = this.step;
+		this.step = (step + 3) % this.path.length;
+
+		return this.tracker.update(this.engine,
+				this.path[step], this.path[step + 1], this.path[step + 2], this.luminance, this.radius, false,
+				this.rebuildCounter, true
+		);
+	}
+
+	@TearDown
+	public void checkAllocations() {
+		var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		// The first query may allocate by itself, only the second one is used as the baseline.
+		threads.getCurrentThreadAllocatedBytes();
+		long before = threads.getCurrentThreadAllocatedBytes();
+
+		for (int i = 0; i < STEPS; i++) {
+			this.update();
+		}
+
+		long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+		if (allocated != 0) {
+			throw new IllegalStateException("The warm update of the lit chunk sections allocated " + allocated + " bytes over " + STEPS + " steps.");
+		}
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2024 LambdAurora <email@lambdaurora.dev>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the Lambda License. For more information,
+ * see the LICENSE file.
+ */
+
+package dev.lambdaurora.lambdynlights.engine;
+
+import dev.lambdaurora.lambdynlights.DynamicLightSource;
+import net.minecraft.client.renderer.LevelRenderer;
+import net.minecraft.world.level.Level;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Represents a light source outside of any level, whose state is set directly by the benchmarks.
+ *
+ * @author LambdAurora
+ * @version 3.3.0
+ * @since 3.3.0
+ */
+final class BenchmarkLightSource implements DynamicLightSource {
+	double x;
+	double y;
+	double z;
+	int luminance;
+	double radius = DEFAULT_RADIUS;
+
+	BenchmarkLightSource(double x, double y, double z, int luminance) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.luminance = luminance;
+	}
+
+	@Override
+	public double getDynamicLightX() {
+		return this.x;
+	}
+
+	@Override
+	public double getDynamicLightY() {
+		return this.y;
+	}
+
+	@Override
+	public double getDynamicLightZ() {
+		return this.z;
+	}
+
+	@Override
+	public Level getDynamicLightLevel() {
+		return null;
+	}
+
+	@Override
+	public void resetDynamicLight() {}
+
+	@Override
+	public int getLuminance() {
+		return this.luminance;
+	}
+
+	@Override
+	public double getDynamicLightRadius() {
+		return this.radius;
+	}
+
+	@Override
+	public void dynamicLightTick() {}
+
+	@Override
+	public boolean shouldUpdateDynamicLight() {
+		return true;
+	}
+
+	@Override
+	public boolean lambdynlights$updateDynamicLight(@NotNull LevelRenderer renderer) {
+		return false;
+	}
+
+	@Override
+	public void lambdynlights$scheduleTrackedChunksRebuild(@NotNull LevelRenderer renderer) {}
+
+	@Override
+	public void lambdynlights$clearTrackedChunks(@NotNull LevelRenderer renderer) {}
+}
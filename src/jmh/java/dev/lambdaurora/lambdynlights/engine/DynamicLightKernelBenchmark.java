@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2024 LambdAurora <email@lambdaurora.dev>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the Lambda License. For more information,
+ * see the LICENSE file.
+ */
+
+package dev.lambdaurora.lambdynlights.engine;
+
+import dev.lambdaurora.lambdynlights.DynamicLightSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the scalar and the vectorized dynamic light kernels depending on the number of candidate light sources per query,
+ * which is the number of light sources in the cell of the queried position.
+ * <p>
+ * The candidates all have the maximum luminance, so the kernels can't stop early and go through the whole run,
+ * as in a dense cell of torch-holding players.
+ * <p>
+ * Run with {@code ./gradlew jmh}, the vectorized kernel is loaded the same way as in game
+ * so the {@code jdk.incubator.vector} module is added to the benchmark JVM.
+ *
+ * @author LambdAurora
+ * @version 3.3.0
+ * @since 3.3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DynamicLightKernelBenchmark {
+	private static final int QUERIES = 1024;
+
+	@Param({"scalar", "vector"})
+	public String kernel;
+	@Param({"4", "8", "16", "32", "64"})
+	public int candidates;
+
+	private final FalloffTable falloff = new FalloffTable(FalloffCurve.LINEAR);
+	private DynamicLightKernel implementation;
+	private int[] sourcesX;
+	private int[] sourcesY;
+	private int[] sourcesZ;
+	private int[] luminance;
+	private int[] radiiSquared;
+	private long[] inverseRadiiSquared;
+	private int[] queries;
+
+	@Setup
+	public void setup() throws ReflectiveOperationException {
+		this.implementation = switch (this.kernel) {
+			case "scalar" -> DynamicLightKernel.SCALAR;
+			// Loaded reflectively, as the vectorized kernel is compiled separately.
+			case "vector" -> (DynamicLightKernel) Class.forName("dev.lambdaurora.lambdynlights.engine.VectorDynamicLightKernel")
+					.getDeclaredConstructor()
+					.newInstance();
+			default -> throw new IllegalArgumentException("Unknown kernel " + this.kernel + ".");
+		};
+
+		var random = new Random(42);
+		int fixedRadius = (int) Math.round(DynamicLightSource.DEFAULT_RADIUS * (1 << FalloffTable.POSITION_SHIFT));
+		int radiusSquared = fixedRadius * fixedRadius;
+
+		this.sourcesX = new int[this.candidates];
+		this.sourcesY = new int[this.candidates];
+		this.sourcesZ = new int[this.candidates];
+		this.luminance = new int[this.candidates];
+		this.radiiSquared = new int[this.candidates];
+		this.inverseRadiiSquared = new long[this.candidates];
+
+		// The candidates are spread over a cell, the queries over the cell and the blocks around it.
+		for (int i = 0; i < this.candidates; i++) {
+			this.sourcesX[i] = random.nextInt(16 << FalloffTable.POSITION_SHIFT);
+			this.sourcesY[i] = random.nextInt(16 << FalloffTable.POSITION_SHIFT);
+			this.sourcesZ[i] = random.nextInt(16 << FalloffTable.POSITION_SHIFT);
+			this.luminance[i] = 15;
+			this.radiiSquared[i] = this.falloff.effectiveRadiusSquared(15, radiusSquared);
+			this.inverseRadiiSquared[i] = FalloffTable.inverseRadiusSquared(radiusSquared);
+		}
+
+		this.queries = new int[QUERIES * 3];
+		for (int i = 0; i < this.queries.length; i++) {
+			this.queries[i] = ((random.nextInt(32) - 8) << FalloffTable.POSITION_SHIFT) + FalloffTable.HALF_BLOCK;
+		}
+	}
+
+	@Benchmark
+	public int queries() {
+		int sum = 0;
+
+		for (int i = 0; i < this.queries.length; i += 3) {
+			sum += this.implementation.maxDynamicLightLevel(this.queries[i], this.queries[i + 1], this.queries[i + 2],
+					this.sourcesX, this.sourcesY, this.sourcesZ, this.luminance, this.radiiSquared, this.inverseRadiiSquared,
+					0, this.candidates,
+					this.falloff,
+					0
+			);
+		}
+
+		return sum;
+	}
+}
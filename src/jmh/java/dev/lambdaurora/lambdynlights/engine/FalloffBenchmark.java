@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2024 LambdAurora <email@lambdaurora.dev>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the Lambda License. For more information,
+ * see the LICENSE file.
+ */
+
+package dev.lambdaurora.lambdynlights.engine;
+
+import dev.lambdaurora.lambdynlights.DynamicLightSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the integer light pipeline with the floating-point one it replaced, on the meshing hot path:
+ * the light of a whole chunk section and of its border from the light sources around it.
+ * <ul>
+ *     <li>{@code integerSectionFill}: fixed-point distances and the precomputed falloff table, as the engine does;</li>
+ *     <li>{@code doubleSectionFill}: {@code double} distances, a square root per block and the conversion
+ *     to sixteenths of a light level, as {@link DynamicLightingEngine#maxDynamicLightLevel(int, int, int, double, double, double, int, double)} does.</li>
+ * </ul>
+ * <p>
+ * Run with {@code ./gradlew jmh}.
+ *
+ * @author LambdAurora
+ * @version 3.3.0
+ * @since 3.3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FalloffBenchmark {
+	private static final int SIZE = SectionLightVolume.SIZE;
+
+	@Param({"1", "8", "32"})
+	public int sources;
+
+	private final FalloffTable falloff = new FalloffTable(FalloffCurve.LINEAR);
+	private final byte[] levels = new byte[SIZE * SIZE * SIZE];
+	// The light sources, relative to the first block of the volume.
+	private double[] x;
+	private double[] y;
+	private double[] z;
+	private int[] luminance;
+	// The same light sources in fixed-point, as captured by the engine.
+	private int[] fixedX;
+	private int[] fixedY;
+	private int[] fixedZ;
+	private int[] radiiSquared;
+	private long[] inverseRadiiSquared;
+
+	@Setup
+	public void setup() {
+		var random = new Random(42);
+
+		this.x = new double[this.sources];
+		this.y = new double[this.sources];
+		this.z = new double[this.sources];
+		this.luminance = new int[this.sources];
+		this.fixedX = new int[this.sources];
+		this.fixedY = new int[this.sources];
+		this.fixedZ = new int[this.sources];
+		this.radiiSquared = new int[this.sources];
+		this.inverseRadiiSquared = new long[this.sources];
+
+		int fixedRadius = (int) Math.round(DynamicLightSource.DEFAULT_RADIUS * (1 << FalloffTable.POSITION_SHIFT));
+		int radiusSquared = fixedRadius * fixedRadius;
+
+		for (int i = 0; i < this.sources; i++) {
+			// Within the section and a few blocks around it, so every light source lights part of the volume.
+			this.x[i] = random.nextDouble() * 24 - 3;
+			this.y[i] = random.nextDouble() * 24 - 3;
+			this.z[i] = random.nextDouble() * 24 - 3;
+			this.luminance[i] = 1 + random.nextInt(15);
+			this.fixedX[i] = (int) Math.round(this.x[i] * (1 << FalloffTable.POSITION_SHIFT));
+			this.fixedY[i] = (int) Math.round(this.y[i] * (1 << FalloffTable.POSITION_SHIFT));
+			this.fixedZ[i] = (int) Math.round(this.z[i] * (1 << FalloffTable.POSITION_SHIFT));
+			this.radiiSquared[i] = this.falloff.effectiveRadiusSquared(this.luminance[i], radiusSquared);
+			this.inverseRadiiSquared[i] = FalloffTable.inverseRadiusSquared(radiusSquared);
+		}
+	}
+
+	@Benchmark
+	public byte[] integerSectionFill() {
+		Arrays.fill(this.levels, (byte) 0);
+
+		for (int i = 0; i < this.sources; i++) {
+			SectionLightVolume.addLightSource(this.levels, SIZE, SIZE, SIZE,
+					this.fixedX[i], this.fixedY[i], this.fixedZ[i], this.luminance[i], this.radiiSquared[i], this.inverseRadiiSquared[i],
+					this.falloff
+			);
+		}
+
+		return this.levels;
+	}
+
+	@Benchmark
+	public byte[] doubleSectionFill() {
+		Arrays.fill(this.levels, (byte) 0);
+		double radius = DynamicLightSource.DEFAULT_RADIUS;
+
+		for (int i = 0; i < this.sources; i++) {
+			double sourceX = this.x[i];
+			double sourceY = this.y[i];
+			double sourceZ = this.z[i];
+			int luminance = this.luminance[i];
+			// The cube of the radius, the floating-point pipeline neither clipped the rows to the sphere nor knew the effective radius.
+			int startX = Math.max(0, (int) Math.floor(sourceX - radius));
+			int startY = Math.max(0, (int) Math.floor(sourceY - radius));
+			int startZ = Math.max(0, (int) Math.floor(sourceZ - radius));
+			int endX = Math.min(SIZE - 1, (int) Math.floor(sourceX + radius));
+			int endY = Math.min(SIZE - 1, (int) Math.floor(sourceY + radius));
+			int endZ = Math.min(SIZE - 1, (int) Math.floor(sourceZ + radius));
+
+			for (int blockZ = startZ; blockZ <= endZ; blockZ++) {
+				for (int blockY = startY; blockY <= endY; blockY++) {
+					int index = (blockZ * SIZE + blockY) * SIZE + startX;
+
+					for (int blockX = startX; blockX <= endX; blockX++, index++) {
+						double dx = blockX - sourceX + 0.5;
+						double dy = blockY - sourceY + 0.5;
+						double dz = blockZ - sourceZ + 0.5;
+						double distanceSquared = dx * dx + dy * dy + dz * dz;
+						if (distanceSquared > radius * radius) continue;
+
+						double lightLevel = (1.0 - Math.sqrt(distanceSquared) / radius) * luminance;
+						int level = (int) (lightLevel * 16.0);
+
+						if (level > (this.levels[index] & 0xff)) {
+							this.levels[index] = (byte) level;
+						}
+					}
+				}
+			}
+		}
+
+		return this.levels;
+	}
+}
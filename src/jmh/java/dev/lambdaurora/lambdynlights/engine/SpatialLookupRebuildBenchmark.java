@@ -0,0 +1,140 @@
+/*
+ * Copyright © 2024 LambdAurora <email@lambdaurora.dev>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the Lambda License. For more information,
+ * see the LICENSE file.
+ */
+
+package dev.lambdaurora.lambdynlights.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the update of the spatial lookup of the engine with light sources scattered over a 256x64x256 blocks area.
+ * <ul>
+ *     <li>{@code rebuild}: every light source moves to another cell, so the storage is compacted back by cell
+ *     and every cell of the spatial index is captured again;</li>
+ *     <li>{@code incrementalUpdate}: one light source in sixteen moves, which is applied as deltas;</li>
+ *     <li>{@code singleUpdate}: a single light source moves, like the player walking around with a torch,
+ *     so only the cells it leaves and enters are captured again and replaced in the spare grid index.</li>
+ * </ul>
+ * <p>
+ * All include the publication of the new snapshot.
+ * Run with {@code ./gradlew jmh}.
+ *
+ * @author LambdAurora
+ * @version 3.3.0
+ * @since 3.3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpatialLookupRebuildBenchmark {
+	private static final int POSITION_SETS = 4;
+
+	@Param({"100", "1000", "10000"})
+	public int sources;
+
+	private final DynamicLightingEngine engine = new DynamicLightingEngine();
+	private BenchmarkLightSource[] lightSources;
+	// The positions the light sources cycle through, so every update actually moves them.
+	private double[][] positions;
+	private int positionSet = 0;
+	private int nextMoved = 0;
+
+	@Setup
+	public void setup() {
+		var random = new Random(42);
+
+		this.lightSources = new BenchmarkLightSource[this.sources];
+		this.positions = new double[POSITION_SETS][this.sources * 3];
+
+		for (var positions : this.positions) {
+			for (int i = 0; i < this.sources; i++) {
+				positions[i * 3] = random.nextDouble() * 256;
+				positions[i * 3 + 1] = 32 + random.nextDouble() * 64;
+				positions[i * 3 + 2] = random.nextDouble() * 256;
+			}
+		}
+
+		for (int i = 0; i < this.sources; i++) {
+			var source = new BenchmarkLightSource(this.positions[0][i * 3], this.positions[0][i * 3 + 1], this.positions[0][i * 3 + 2],
+					1 + random.nextInt(15)
+			);
+			this.lightSources[i] = source;
+			this.engine.addLightSource(source);
+		}
+
+		this.engine.updateSpatialLookup();
+	}
+
+	@Benchmark
+	public int rebuild() {
+		this.positionSet = (this.positionSet + 1) % POSITION_SETS;
+
+		for (int i = 0; i < this.sources; i++) {
+			this.move(i);
+		}
+
+		this.engine.updateSpatialLookup();
+		return this.engine.getIndexedLightSourcesCount();
+	}
+
+	@Benchmark
+	public int incrementalUpdate() {
+		int moved = Math.max(1, this.sources / 16);
+
+		for (int i = 0; i < moved; i++) {
+			this.move(this.nextMoved);
+
+			if (++this.nextMoved == this.sources) {
+				this.nextMoved = 0;
+				this.positionSet = (this.positionSet + 1) % POSITION_SETS;
+			}
+		}
+
+		this.engine.updateSpatialLookup();
+		return this.engine.getIndexedLightSourcesCount();
+	}
+
+	@Benchmark
+	public int singleUpdate() {
+		this.move(this.nextMoved);
+
+		if (++this.nextMoved == this.sources) {
+			this.nextMoved = 0;
+			this.positionSet = (this.positionSet + 1) % POSITION_SETS;
+		}
+
+		this.engine.updateSpatialLookup();
+		return this.engine.getIndexedLightSourcesCount();
+	}
+
+	private void move(int index) {
+		var source = this.lightSources[index];
+		double[] positions = this.positions[this.positionSet];
+
+		source.x = positions[index * 3];
+		source.y = positions[index * 3 + 1];
+		source.z = positions[index * 3 + 2];
+		this.engine.updateLightSource(source);
+	}
+}
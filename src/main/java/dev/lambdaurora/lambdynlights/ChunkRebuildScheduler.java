@@ -0,0 +1,322 @@
+/*
+ * Copyright © 2024 LambdAurora <email@lambdaurora.dev>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the Lambda License. For more information,
+ * see the LICENSE file.
+ */
+
+package dev.lambdaurora.lambdynlights;
+
+import dev.lambdaurora.lambdynlights.accessor.FrustumAccessor;
+import dev.lambdaurora.lambdynlights.accessor.WorldRendererAccessor;
+import it.unimi.dsi.fastutil.Arrays;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2IntMaps;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.LevelRenderer;
+import net.minecraft.client.renderer.culling.Frustum;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.ChunkSectionPos;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Collects the chunk sections to rebuild from every light source, and schedules their rebuild once per frame.
+ * <p>
+ * The requested chunk sections are staged until {@linkplain #commit() committed} once the dynamic lighting engine published the changes
+ * they were requested for, so a chunk section isn't rebuilt with the light it had before.
+ * <p>
+ * Light sources standing close to each other light up the same chunk sections,
+ * each chunk section is only marked dirty once however many light sources asked for it.
+ * <p>
+ * At most a budget of chunk sections are scheduled per frame so a burst of changes doesn't stall the chunk compiler,
+ * the closest ones to the camera and the ones the most light sources asked for go first and the others wait for the next frames.
+ * <p>
+ * The chunk sections out of view are deferred until they enter the view, however many times their light changed meanwhile,
+ * and forgotten once they are out of the render distance on any axis, as they will be rebuilt anyway when they are loaded again
+ * or are too far above or below the camera for their light to be told apart.
+ *
+ * @author LambdAurora
+ * @version 3.3.0
+ * @since 3.3.0
+ */
+public final class ChunkRebuildScheduler {
+	/**
+	 * The distance in chunk sections from the camera within which the rebuilds are flagged as important,
+	 * so the chunk compiler doesn't let them lag behind.
+	 * <p>
+	 * Depending on the chunk update priority option, important rebuilds may be compiled synchronously on the render thread,
+	 * so only the chunk section of the camera is flagged.
+	 */
+	private static final int IMPORTANT_DISTANCE = 0;
+	/**
+	 * The distance in chunk sections from the camera within which the chunk sections are never deferred,
+	 * as they come into view as soon as the camera turns.
+	 */
+	private static final int NEVER_DEFERRED_DISTANCE = 1;
+
+	// Maps the packed position of each staged chunk section to the number of times its rebuild was requested.
+	private final Long2IntOpenHashMap stagedSections = new Long2IntOpenHashMap();
+	// Same as the staged chunk sections, but for the committed ones.
+	private final Long2IntOpenHashMap pendingSections = new Long2IntOpenHashMap();
+	// Same as the pending chunk sections, but for the ones out of view.
+	private final Long2IntOpenHashMap deferredSections = new Long2IntOpenHashMap();
+	private long[] sections = new long[64];
+	private long[] priorities = new long[64];
+	private int requests = 0;
+	private int duplicates = 0;
+	private int lastRequests = 0;
+	private int lastRebuilds = 0;
+	private int lastDuplicates = 0;
+
+	/**
+	 * Requests the rebuild of the specified chunk section.
+	 *
+	 * @param x the X coordinate of the chunk section
+	 * @param y the Y coordinate of the chunk section
+	 * @param z the Z coordinate of the chunk section
+	 */
+	public void schedule(int x, int y, int z) {
+		this.schedule(BlockPos.asLong(x, y, z));
+	}
+
+	/**
+	 * Requests the rebuild of the specified chunk section.
+	 *
+	 * @param sectionPos the packed chunk section position
+	 */
+	public void schedule(long sectionPos) {
+		this.requests++;
+
+		if (this.stagedSections.addTo(sectionPos, 1) != 0 || this.pendingSections.containsKey(sectionPos)) {
+			this.duplicates++;
+		}
+	}
+
+	/**
+	 * Commits the chunk sections requested since the last commit, so their rebuild can be scheduled.
+	 * <p>
+	 * This must be called once the changes of light the rebuilds were requested for are published.
+	 */
+	public void commit() {
+		if (!this.stagedSections.isEmpty()) {
+			this.moveAll(this.stagedSections, this.pendingSections);
+		}
+	}
+
+	/**
+	 * Schedules the rebuild of the most urgent requested chunk sections in view, each of them only once.
+	 *
+	 * @param renderer the renderer
+	 * @param frustum the frustum of the camera, or {@code null} if every chunk section should be considered in view
+	 * @param budget the maximum number of chunk sections to schedule the rebuild of
+	 */
+	public void drain(@NotNull LevelRenderer renderer, @Nullable Frustum frustum, int budget) {
+		if (this.pendingSections.isEmpty() && this.deferredSections.isEmpty()) {
+			this.lastRequests = this.lastDuplicates = this.lastRebuilds = 0;
+			return;
+		}
+
+		var client = Minecraft.getInstance();
+		var camera = client.getCameraEntity();
+
+		if (client.level == null || camera == null) {
+			this.clear();
+			return;
+		}
+
+		int cameraX = ChunkSectionPos.blockToSectionCoord(camera.getX());
+		int cameraY = ChunkSectionPos.blockToSectionCoord(camera.getEyeY());
+		int cameraZ = ChunkSectionPos.blockToSectionCoord(camera.getZ());
+		this.updateVisibility(frustum, cameraX, cameraY, cameraZ, client.options.getEffectiveRenderDistance());
+
+		int count = this.collectPendingSections(cameraX, cameraY, cameraZ);
+		int rebuilds = Math.min(count, budget);
+
+		if (count > budget) {
+			this.sortByPriority(count);
+		}
+
+		var accessor = (WorldRendererAccessor) renderer;
+		for (int i = 0; i < rebuilds; i++) {
+			long pos = this.sections[i];
+			int x = BlockPos.unpackLongX(pos);
+			int y = BlockPos.unpackLongY(pos);
+			int z = BlockPos.unpackLongZ(pos);
+			accessor.lambdynlights$scheduleChunkRebuild(x, y, z, isNearCamera(pos, cameraX, cameraY, cameraZ));
+			this.pendingSections.remove(pos);
+		}
+
+		this.lastRequests = this.requests;
+		this.lastDuplicates = this.duplicates;
+		this.lastRebuilds = rebuilds;
+		this.requests = this.duplicates = 0;
+	}
+
+	/**
+	 * Clears the staged, pending and deferred chunk sections, as they belong to a level which is no longer rendered.
+	 */
+	private void clear() {
+		this.stagedSections.clear();
+		this.pendingSections.clear();
+		this.deferredSections.clear();
+		this.requests = this.duplicates = 0;
+		this.lastRequests = this.lastDuplicates = this.lastRebuilds = 0;
+	}
+
+	/**
+	 * Moves the chunk sections which left the view to the deferred chunk sections, and the ones which entered it back to the pending ones.
+	 *
+	 * @param frustum the frustum of the camera, or {@code null} if every chunk section should be considered in view
+	 * @param cameraX the X coordinate of the chunk section of the camera
+	 * @param cameraY the Y coordinate of the chunk section of the camera
+	 * @param cameraZ the Z coordinate of the chunk section of the camera
+	 * @param renderDistance the render distance in chunks
+	 */
+	private void updateVisibility(@Nullable Frustum frustum, int cameraX, int cameraY, int cameraZ, int renderDistance) {
+		if (frustum == null) {
+			this.moveAll(this.deferredSections, this.pendingSections);
+			return;
+		}
+
+		for (var it = this.deferredSections.long2IntEntrySet().fastIterator(); it.hasNext(); ) {
+			var entry = it.next();
+			long pos = entry.getLongKey();
+
+			if (!isWithinDistance(pos, cameraX, cameraY, cameraZ, renderDistance)) {
+				it.remove();
+			} else if (isInView(frustum, pos, cameraX, cameraY, cameraZ)) {
+				this.pendingSections.addTo(pos, entry.getIntValue());
+				it.remove();
+			}
+		}
+
+		for (var it = this.pendingSections.long2IntEntrySet().fastIterator(); it.hasNext(); ) {
+			var entry = it.next();
+			long pos = entry.getLongKey();
+
+			if (!isInView(frustum, pos, cameraX, cameraY, cameraZ)) {
+				this.deferredSections.addTo(pos, entry.getIntValue());
+				it.remove();
+			}
+		}
+	}
+
+	private void moveAll(Long2IntOpenHashMap from, Long2IntOpenHashMap to) {
+		for (var entry : Long2IntMaps.fastIterable(from)) {
+			to.addTo(entry.getLongKey(), entry.getIntValue());
+		}
+		from.clear();
+	}
+
+	private static boolean isInView(@NotNull Frustum frustum, long sectionPos, int cameraX, int cameraY, int cameraZ) {
+		// The chunk sections around the camera are never deferred, they come into view as soon as the camera turns.
+		if (isWithinDistance(sectionPos, cameraX, cameraY, cameraZ, NEVER_DEFERRED_DISTANCE)) return true;
+
+		// Tests the bounds directly, as allocating a box for every chunk section every frame adds up.
+		double minX = BlockPos.unpackLongX(sectionPos) << 4;
+		double minY = BlockPos.unpackLongY(sectionPos) << 4;
+		double minZ = BlockPos.unpackLongZ(sectionPos) << 4;
+		return ((FrustumAccessor) frustum).lambdynlights$isVisible(minX, minY, minZ, minX + 16, minY + 16, minZ + 16);
+	}
+
+	private static boolean isNearCamera(long sectionPos, int cameraX, int cameraY, int cameraZ) {
+		return isWithinDistance(sectionPos, cameraX, cameraY, cameraZ, IMPORTANT_DISTANCE);
+	}
+
+	private static boolean isWithinDistance(long sectionPos, int cameraX, int cameraY, int cameraZ, int distance) {
+		return Math.abs(BlockPos.unpackLongX(sectionPos) - cameraX) <= distance
+				&& Math.abs(BlockPos.unpackLongY(sectionPos) - cameraY) <= distance
+				&& Math.abs(BlockPos.unpackLongZ(sectionPos) - cameraZ) <= distance;
+	}
+
+	/**
+	 * Copies the pending chunk sections along with their priority, the lower the more urgent.
+	 * <p>
+	 * The priority is the squared distance to the camera in chunk sections, divided by the number of requests of the chunk section
+	 * as a chunk section lit up by more light sources is likely to see a larger change of light.
+	 *
+	 * @param cameraX the X coordinate of the chunk section of the camera
+	 * @param cameraY the Y coordinate of the chunk section of the camera
+	 * @param cameraZ the Z coordinate of the chunk section of the camera
+	 * @return the number of pending chunk sections
+	 */
+	private int collectPendingSections(int cameraX, int cameraY, int cameraZ) {
+		int count = this.pendingSections.size();
+
+		if (this.sections.length < count) {
+			int capacity = Math.max(count, this.sections.length * 2);
+			this.sections = new long[capacity];
+			this.priorities = new long[capacity];
+		}
+
+		int i = 0;
+		for (var entry : this.pendingSections.long2IntEntrySet()) {
+			long pos = entry.getLongKey();
+			long dx = BlockPos.unpackLongX(pos) - cameraX;
+			long dy = BlockPos.unpackLongY(pos) - cameraY;
+			long dz = BlockPos.unpackLongZ(pos) - cameraZ;
+
+			this.sections[i] = pos;
+			// Scaled up so the division by the number of requests keeps enough precision.
+			this.priorities[i] = ((dx * dx + dy * dy + dz * dz) << 8) / entry.getIntValue();
+			i++;
+		}
+
+		return count;
+	}
+
+	private void sortByPriority(int count) {
+		long[] sections = this.sections;
+		long[] priorities = this.priorities;
+
+		Arrays.quickSort(0, count,
+				(a, b) -> Long.compare(priorities[a], priorities[b]),
+				(a, b) -> {
+					long section = sections[a];
+					sections[a] = sections[b];
+					sections[b] = section;
+					long priority = priorities[a];
+					priorities[a] = priorities[b];
+					priorities[b] = priority;
+				}
+		);
+	}
+
+	/**
+	 * {@return the number of chunk section rebuilds requested since the previous drain, as of the last drain}
+	 */
+	public int getLastRequests() {
+		return this.lastRequests;
+	}
+
+	/**
+	 * {@return the number of chunk section rebuilds requested since the previous drain which were already pending, as of the last drain}
+	 */
+	public int getLastDuplicates() {
+		return this.lastDuplicates;
+	}
+
+	/**
+	 * {@return the number of chunk section rebuilds scheduled by the last drain}
+	 */
+	public int getLastRebuilds() {
+		return this.lastRebuilds;
+	}
+
+	/**
+	 * {@return the number of chunk sections in view waiting for their rebuild to be scheduled}
+	 */
+	public int getBacklog() {
+		return this.pendingSections.size();
+	}
+
+	/**
+	 * {@return the number of chunk sections out of view whose rebuild is deferred until they enter the view}
+	 */
+	public int getDeferred() {
+		return this.deferredSections.size();
+	}
+}
@@ -18,10 +18,19 @@ import org.jetbrains.annotations.NotNull;
  * Represents a dynamic light source.
  *
  * @author LambdAurora
- * @version 3.0.0
+ * @version 3.3.0
  * @since 1.0.0
  */
 public interface DynamicLightSource {
+	/**
+	 * The default radius of the dynamic light in blocks, whose value is {@value}.
+	 */
+	double DEFAULT_RADIUS = 7.75;
+	/**
+	 * The maximum radius of the dynamic light in blocks, which is the range of the block light, whose value is {@value}.
+	 */
+	double MAX_RADIUS = 15.0;
+
 	/**
 	 * Returns the dynamic light source X coordinate.
 	 *
@@ -85,6 +94,18 @@ public interface DynamicLightSource {
 	 */
 	int getLuminance();
 
+	/**
+	 * Returns the radius of the light source in blocks, past which it gives no light.
+	 * <p>
+	 * The radius is clamped between {@code 1} and {@value #MAX_RADIUS}.
+	 * Light sources reaching further are more expensive, as more chunks have to be rebuilt when they move.
+	 *
+	 * @return the radius of the light source
+	 */
+	default double getDynamicLightRadius() {
+		return DEFAULT_RADIUS;
+	}
+
 	/**
 	 * Executed at each tick.
 	 */
@@ -100,4 +121,6 @@ public interface DynamicLightSource {
 	boolean lambdynlights$updateDynamicLight(@NotNull LevelRenderer renderer);
 
 	void lambdynlights$scheduleTrackedChunksRebuild(@NotNull LevelRenderer renderer);
+
+	void lambdynlights$clearTrackedChunks(@NotNull LevelRenderer renderer);
 }
@@ -13,6 +13,7 @@ import com.electronwill.nightconfig.core.file.FileConfig;
 import com.electronwill.nightconfig.core.io.WritingMode;
 import dev.lambdaurora.lambdynlights.config.BooleanSettingEntry;
 import dev.lambdaurora.lambdynlights.config.SettingEntry;
+import dev.lambdaurora.lambdynlights.engine.FalloffCurve;
 import dev.lambdaurora.spruceui.option.SpruceCyclingOption;
 import dev.lambdaurora.spruceui.option.SpruceOption;
 import net.fabricmc.loader.api.FabricLoader;
@@ -29,28 +30,35 @@ import java.nio.file.Path;
  * Represents the mod configuration.
  *
  * @author LambdAurora
- * @version 3.0.0
+ * @version 3.3.0
  * @since 1.0.0
  */
 public class DynamicLightsConfig {
 	private static final Logger LOGGER = LoggerFactory.getLogger("LambDynamicLights|Config");
 	private static final DynamicLightsMode DEFAULT_DYNAMIC_LIGHTS_MODE = DynamicLightsMode.FANCY;
+	private static final FalloffCurve DEFAULT_FALLOFF_CURVE = FalloffCurve.LINEAR;
 	private static final boolean DEFAULT_ENTITIES_LIGHT_SOURCE = true;
 	private static final boolean DEFAULT_SELF_LIGHT_SOURCE = true;
 	private static final boolean DEFAULT_BLOCK_ENTITIES_LIGHT_SOURCE = true;
 	private static final boolean DEFAULT_WATER_SENSITIVE_CHECK = true;
 	private static final ExplosiveLightingMode DEFAULT_CREEPER_LIGHTING_MODE = ExplosiveLightingMode.SIMPLE;
 	private static final ExplosiveLightingMode DEFAULT_TNT_LIGHTING_MODE = ExplosiveLightingMode.OFF;
+	private static final int DEFAULT_CHUNK_REBUILD_BUDGET = 64;
+	private static final int DEFAULT_UPDATE_TIME_BUDGET = 500;
 
 	public static final Path CONFIG_FILE_PATH = FabricLoader.getInstance().getConfigDir().resolve("lambdynlights.toml");
 	protected final FileConfig config;
 	private final LambDynLights mod;
 	private DynamicLightsMode dynamicLightsMode;
+	private FalloffCurve falloffCurve;
 	private final BooleanSettingEntry entitiesLightSource;
 	private final BooleanSettingEntry selfLightSource;
 	private final BooleanSettingEntry waterSensitiveCheck;
 	private ExplosiveLightingMode creeperLightingMode;
 	private ExplosiveLightingMode tntLightingMode;
+	private int chunkRebuildBudget;
+	private UpdateTiers updateTiers;
+	private int updateTimeBudget;
 
 	public final SpruceOption dynamicLightsModeOption = new SpruceCyclingOption("lambdynlights.option.mode",
 			amount -> this.setDynamicLightsMode(this.dynamicLightsMode.next()),
@@ -61,6 +69,11 @@ public class DynamicLightsConfig {
 					.append(Text.literal("\n"))
 					.append(Text.translatable("lambdynlights.tooltip.mode.3", DynamicLightsMode.FANCY.getTranslatedText())));
 
+	public final SpruceOption falloffCurveOption = new SpruceCyclingOption("lambdynlights.option.falloff",
+			amount -> this.setFalloffCurve(this.falloffCurve.next()),
+			option -> option.getDisplayText(Text.translatable("lambdynlights.falloff." + this.falloffCurve.getName())),
+			Text.translatable("lambdynlights.tooltip.falloff"));
+
 	public DynamicLightsConfig(@NotNull LambDynLights mod) {
 		this.mod = mod;
 
@@ -94,6 +107,9 @@ public class DynamicLightsConfig {
 		String dynamicLightsModeValue = this.config.getOrElse("mode", DEFAULT_DYNAMIC_LIGHTS_MODE.getName());
 		this.dynamicLightsMode = DynamicLightsMode.byId(dynamicLightsModeValue)
 				.orElse(DEFAULT_DYNAMIC_LIGHTS_MODE);
+		this.falloffCurve = FalloffCurve.byId(this.config.getOrElse("falloff", DEFAULT_FALLOFF_CURVE.getName()))
+				.orElse(DEFAULT_FALLOFF_CURVE);
+		this.mod.setFalloffCurve(this.falloffCurve);
 		this.entitiesLightSource.load(this.config);
 		this.selfLightSource.load(this.config);
 		this.waterSensitiveCheck.load(this.config);
@@ -101,6 +117,18 @@ public class DynamicLightsConfig {
 				.orElse(DEFAULT_CREEPER_LIGHTING_MODE);
 		this.tntLightingMode = ExplosiveLightingMode.byId(this.config.getOrElse("light_sources.tnt", DEFAULT_TNT_LIGHTING_MODE.getName()))
 				.orElse(DEFAULT_TNT_LIGHTING_MODE);
+		this.chunkRebuildBudget = Math.max(1, this.config.getIntOrElse("performance.chunk_rebuild_budget", DEFAULT_CHUNK_REBUILD_BUDGET));
+		if (this.config.contains("performance.update_tiers")) {
+			this.updateTiers = UpdateTiers.deserialize(this.config.get("performance.update_tiers"));
+
+			if (this.updateTiers == null) {
+				LambDynLights.warn(LOGGER, "Invalid update tiers in the configuration, expected a list of [distance, delay] pairs. Using the default ones.");
+				this.updateTiers = UpdateTiers.DEFAULT;
+			}
+		} else {
+			this.updateTiers = UpdateTiers.DEFAULT;
+		}
+		this.updateTimeBudget = Math.max(0, this.config.getIntOrElse("performance.update_time_budget", DEFAULT_UPDATE_TIME_BUDGET));
 
 		LambDynLights.log(LOGGER, "Configuration loaded.");
 	}
@@ -126,11 +154,15 @@ public class DynamicLightsConfig {
 	 */
 	public void reset() {
 		this.setDynamicLightsMode(DEFAULT_DYNAMIC_LIGHTS_MODE);
+		this.setFalloffCurve(DEFAULT_FALLOFF_CURVE);
 		this.getEntitiesLightSource().set(DEFAULT_ENTITIES_LIGHT_SOURCE);
 		this.getSelfLightSource().set(DEFAULT_SELF_LIGHT_SOURCE);
 		this.getWaterSensitiveCheck().set(DEFAULT_WATER_SENSITIVE_CHECK);
 		this.setCreeperLightingMode(DEFAULT_CREEPER_LIGHTING_MODE);
 		this.setTntLightingMode(DEFAULT_TNT_LIGHTING_MODE);
+		this.setChunkRebuildBudget(DEFAULT_CHUNK_REBUILD_BUDGET);
+		this.setUpdateTiers(UpdateTiers.DEFAULT);
+		this.setUpdateTimeBudget(DEFAULT_UPDATE_TIME_BUDGET);
 	}
 
 	/**
@@ -156,6 +188,24 @@ public class DynamicLightsConfig {
 		this.config.set("mode", mode.getName());
 	}
 
+	/**
+	 * {@return the curve the dynamic light falls off with}
+	 */
+	public FalloffCurve getFalloffCurve() {
+		return this.falloffCurve;
+	}
+
+	/**
+	 * Sets the curve the dynamic light falls off with.
+	 *
+	 * @param curve the falloff curve
+	 */
+	public void setFalloffCurve(@NotNull FalloffCurve curve) {
+		this.falloffCurve = curve;
+		this.mod.setFalloffCurve(curve);
+		this.config.set("falloff", curve.getName());
+	}
+
 	/**
 	 * {@return the entities as light source setting holder}
 	 */
@@ -220,4 +270,62 @@ public class DynamicLightsConfig {
 			this.mod.removeTntLightSources();
 		this.config.set("light_sources.tnt", lightingMode.getName());
 	}
+
+	/**
+	 * {@return the maximum number of chunk sections the dynamic lighting may schedule the rebuild of per frame}
+	 */
+	public int getChunkRebuildBudget() {
+		return this.chunkRebuildBudget;
+	}
+
+	/**
+	 * Sets the maximum number of chunk sections the dynamic lighting may schedule the rebuild of per frame.
+	 *
+	 * @param budget the chunk rebuild budget, at least {@code 1}
+	 */
+	public void setChunkRebuildBudget(int budget) {
+		this.chunkRebuildBudget = Math.max(1, budget);
+		this.config.set("performance.chunk_rebuild_budget", this.chunkRebuildBudget);
+	}
+
+	/**
+	 * {@return the distance tiers of the update rate of the light sources}
+	 */
+	public @NotNull UpdateTiers getUpdateTiers() {
+		return this.updateTiers;
+	}
+
+	/**
+	 * Sets the distance tiers of the update rate of the light sources.
+	 *
+	 * @param tiers the update tiers
+	 */
+	public void setUpdateTiers(@NotNull UpdateTiers tiers) {
+		this.updateTiers = tiers;
+		this.config.set("performance.update_tiers", tiers.serialize());
+	}
+
+	/**
+	 * {@return the time the light sources updates may take per frame, in microseconds}
+	 */
+	public int getUpdateTimeBudget() {
+		return this.updateTimeBudget;
+	}
+
+	/**
+	 * {@return the time the light sources updates may take per frame, in nanoseconds}
+	 */
+	public long getUpdateTimeBudgetNanos() {
+		return this.updateTimeBudget * 1000L;
+	}
+
+	/**
+	 * Sets the time the light sources updates may take per frame.
+	 *
+	 * @param budget the update time budget in microseconds
+	 */
+	public void setUpdateTimeBudget(int budget) {
+		this.updateTimeBudget = Math.max(0, budget);
+		this.config.set("performance.update_time_budget", this.updateTimeBudget);
+	}
 }
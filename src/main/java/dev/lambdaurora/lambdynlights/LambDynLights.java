@@ -9,10 +9,10 @@
 
 package dev.lambdaurora.lambdynlights;
 
-import dev.lambdaurora.lambdynlights.accessor.WorldRendererAccessor;
 import dev.lambdaurora.lambdynlights.api.DynamicLightHandlers;
 import dev.lambdaurora.lambdynlights.api.DynamicLightsInitializer;
 import dev.lambdaurora.lambdynlights.engine.DynamicLightingEngine;
+import dev.lambdaurora.lambdynlights.engine.FalloffCurve;
 import dev.lambdaurora.lambdynlights.resource.item.ItemLightSources;
 import dev.yumi.commons.event.EventManager;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
@@ -47,14 +47,13 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Predicate;
 
 /**
  * Represents the LambDynamicLights mod.
  *
  * @author LambdAurora
- * @version 3.1.1
+ * @version 3.3.0
  * @since 1.0.0
  */
 public class LambDynLights implements ClientModInitializer {
@@ -66,9 +65,8 @@ public class LambDynLights implements ClientModInitializer {
 	private final DynamicLightingEngine engine = new DynamicLightingEngine();
 	private final Set<DynamicLightSource> dynamicLightSources = new HashSet<>();
 	private final List<DynamicLightSource> toClear = new ArrayList<>();
-	private final ReentrantReadWriteLock lightSourcesLock = new ReentrantReadWriteLock();
-	private long lastUpdate = System.currentTimeMillis();
-	private int lastUpdateCount = 0;
+	private final ChunkRebuildScheduler chunkRebuildScheduler = new ChunkRebuildScheduler();
+	private final LightSourceUpdateScheduler updateScheduler = new LightSourceUpdateScheduler();
 
 	@Override
 	public void onInitializeClient() {
@@ -88,12 +86,13 @@ public class LambDynLights implements ClientModInitializer {
 			this.itemLightSources.apply(registries);
 		});
 
+		// The changes of the light sources updated during the frames of a tick are published at once at its end,
+		// only then the chunk sections they light up differently are rebuilt.
 		ClientTickEvents.END_WORLD_TICK.register(level -> {
-			this.lightSourcesLock.writeLock().lock();
-			this.engine.computeSpatialLookup(this.dynamicLightSources);
-			this.toClear.forEach(source -> source.lambdynlights$scheduleTrackedChunksRebuild(Minecraft.getInstance().levelRenderer));
+			this.updateSpatialLookup(Minecraft.getInstance().levelRenderer);
+			this.toClear.forEach(source -> source.lambdynlights$clearTrackedChunks(Minecraft.getInstance().levelRenderer));
 			this.toClear.clear();
-			this.lightSourcesLock.writeLock().unlock();
+			this.chunkRebuildScheduler.commit();
 		});
 
 		WorldRenderEvents.START.register(context -> {
@@ -101,27 +100,47 @@ public class LambDynLights implements ClientModInitializer {
 			this.updateAll(context.worldRenderer());
 		});
 
+		// The frustum is only known once the rendering is set up, the chunk sections to rebuild are picked from it.
+		WorldRenderEvents.AFTER_SETUP.register(context -> {
+			this.chunkRebuildScheduler.drain(context.worldRenderer(), context.frustum(), this.config.getChunkRebuildBudget());
+		});
+
 		DynamicLightHandlers.registerDefaultHandlers();
 	}
 
 	/**
-	 * Updates all light sources.
+	 * Updates the light sources due this frame.
+	 * <p>
+	 * Every light source is updated once every {@linkplain LightSourceUpdateScheduler#ROUND_DURATION_NANOS 50 milliseconds},
+	 * the updates are spread over the frames within the time budget per frame.
+	 * The changes are only staged in the engine, they are published once per tick.
 	 *
 	 * @param renderer the renderer
+	 * @see LightSourceUpdateScheduler
 	 */
 	public void updateAll(@NotNull LevelRenderer renderer) {
 		if (!this.config.getDynamicLightsMode().isEnabled())
 			return;
 
-		long now = System.currentTimeMillis();
-		if (now >= this.lastUpdate + 50) {
-			this.lastUpdate = now;
-			this.lastUpdateCount = 0;
-
-			for (var lightSource : this.dynamicLightSources) {
-				if (lightSource.lambdynlights$updateDynamicLight(renderer)) this.lastUpdateCount++;
+		this.updateScheduler.update(lightSource -> {
+			if (lightSource.lambdynlights$updateDynamicLight(renderer)) {
+				this.engine.updateLightSource(lightSource);
+				return true;
 			}
-		}
+
+			return false;
+		}, this.config.getUpdateTimeBudgetNanos());
+	}
+
+	/**
+	 * Applies the pending changes of the light sources to the dynamic lighting engine,
+	 * and rebuilds the chunks of the light sources whose light changed because of the other light sources they are merged with.
+	 *
+	 * @param renderer the renderer
+	 */
+	private void updateSpatialLookup(@NotNull LevelRenderer renderer) {
+		this.engine.updateSpatialLookup();
+		this.engine.drainClusterChangedSources(source -> source.lambdynlights$scheduleTrackedChunksRebuild(renderer));
 	}
 
 	/**
@@ -130,7 +149,7 @@ public class LambDynLights implements ClientModInitializer {
 	 * @return the last number of dynamic light source updates
 	 */
 	public int getLastUpdateCount() {
-		return this.lastUpdateCount;
+		return this.updateScheduler.getLastRoundUpdates();
 	}
 
 	/**
@@ -142,10 +161,13 @@ public class LambDynLights implements ClientModInitializer {
 	 * @return the modified lightmap coordinates
 	 */
 	public int getLightmapWithDynamicLight(@NotNull BlockAndTintGetter level, @NotNull BlockPos pos, int lightmap) {
-		if (!(level instanceof ClientLevel)) this.lightSourcesLock.readLock().lock();
-		double light = this.getDynamicLightLevel(pos);
-		if (!(level instanceof ClientLevel)) this.lightSourcesLock.readLock().unlock();
-		return this.getLightmapWithDynamicLight(light, lightmap);
+		if (level instanceof ClientLevel) {
+			return getLightmapWithQuantizedDynamicLight(this.engine.getQuantizedDynamicLightLevel(pos), lightmap);
+		}
+
+		// Any other level is a chunk section being meshed, whose dynamic light is computed at once.
+		// The engine publishes immutable snapshots, so the meshing threads never need to lock.
+		return getLightmapWithQuantizedDynamicLight(this.engine.getSectionDynamicLightLevel(pos), lightmap);
 	}
 
 	/**
@@ -172,6 +194,23 @@ public class LambDynLights implements ClientModInitializer {
 		return lightmap;
 	}
 
+	/**
+	 * Returns the lightmap with combined light levels.
+	 *
+	 * @param dynamicLightLevel the dynamic light level, in sixteenths of a light level
+	 * @param lightmap the vanilla lightmap coordinates
+	 * @return the modified lightmap coordinates
+	 */
+	private static int getLightmapWithQuantizedDynamicLight(int dynamicLightLevel, int lightmap) {
+		// Same as getLightmapWithDynamicLight(double, int), except the level is already in the lightmap precision.
+		if (dynamicLightLevel > LightTexture.block(lightmap) << 4) {
+			lightmap &= 0xfff00000;
+			lightmap |= dynamicLightLevel & 0x000fffff;
+		}
+
+		return lightmap;
+	}
+
 	/**
 	 * Returns the dynamic light level at the specified position.
 	 *
@@ -182,6 +221,119 @@ public class LambDynLights implements ClientModInitializer {
 		return this.engine.getDynamicLightLevel(pos);
 	}
 
+	/**
+	 * Returns the effective radius of a light source, which is the distance past which it gives no visible light.
+	 *
+	 * @param luminance the luminance of the light source
+	 * @param radius the radius of the light source
+	 * @return the effective radius in blocks, or {@code -1} if the light source gives no visible light
+	 */
+	public double getEffectiveRadius(int luminance, double radius) {
+		return this.engine.getEffectiveRadius(luminance, radius);
+	}
+
+	/**
+	 * Computes the footprint of the light a single light source gives to a chunk section,
+	 * two footprints only differ if the light source would render differently in the chunk section.
+	 *
+	 * @param x the X coordinate of the light source
+	 * @param y the Y coordinate of the light source
+	 * @param z the Z coordinate of the light source
+	 * @param luminance the luminance of the light source
+	 * @param radius the radius of the light source
+	 * @param sectionX the X coordinate of the chunk section
+	 * @param sectionY the Y coordinate of the chunk section
+	 * @param sectionZ the Z coordinate of the chunk section
+	 * @return the footprint of the light source, or {@code 0} if it gives no visible light to the chunk section
+	 * @see DynamicLightingEngine#computeLightFootprint(double, double, double, int, double, int, int, int)
+	 */
+	public long computeLightFootprint(
+			double x, double y, double z, int luminance, double radius,
+			int sectionX, int sectionY, int sectionZ
+	) {
+		return this.engine.computeLightFootprint(x, y, z, luminance, radius, sectionX, sectionY, sectionZ);
+	}
+
+	/**
+	 * Updates the chunk sections lit up by a light source, and schedules the rebuild of the ones in which its light renders differently.
+	 *
+	 * @param litChunkSections the chunk sections lit up by the light source
+	 * @param x the X coordinate of the light source
+	 * @param y the Y coordinate of the light source
+	 * @param z the Z coordinate of the light source
+	 * @param luminance the luminance of the light source
+	 * @param radius the radius of the light source
+	 * @param clustered {@code true} if the light source is merged into a cluster, or {@code false} otherwise
+	 * @param rebuildRemoved {@code true} if the chunk sections no longer lit up should be rebuilt, or {@code false} otherwise
+	 * @return {@code true} if the light renders differently in any chunk section, or {@code false} otherwise
+	 * @see LitChunkSectionTracker#update(DynamicLightingEngine, double, double, double, int, double, boolean, java.util.function.LongConsumer, boolean)
+	 */
+	public boolean updateLitChunkSections(
+			@NotNull LitChunkSectionTracker litChunkSections,
+			double x, double y, double z, int luminance, double radius, boolean clustered,
+			boolean rebuildRemoved
+	) {
+		return litChunkSections.update(this.engine,
+				x, y, z, luminance, radius, clustered,
+				LambDynLights::scheduleChunkRebuild, rebuildRemoved
+		);
+	}
+
+	/**
+	 * Returns whether the given light source still gives the same light as when it was last updated,
+	 * thanks to it being merged with other co-located light sources, in which case its chunks don't need to be rebuilt.
+	 *
+	 * @param lightSource the light source
+	 * @return {@code true} if the light of the light source is unchanged, or {@code false} otherwise
+	 */
+	public boolean isUnchangedWithinCluster(@NotNull DynamicLightSource lightSource) {
+		return this.engine.isUnchangedWithinCluster(lightSource);
+	}
+
+	/**
+	 * Returns whether the given light source is merged with other co-located light sources,
+	 * in which case its light is rendered from the center of its cluster.
+	 *
+	 * @param lightSource the light source
+	 * @return {@code true} if the light source is merged into a cluster, or {@code false} otherwise
+	 * @see DynamicLightingEngine#isClustered(DynamicLightSource)
+	 */
+	public boolean isClustered(@NotNull DynamicLightSource lightSource) {
+		return this.engine.isClustered(lightSource);
+	}
+
+	/**
+	 * Sets the curve the dynamic light falls off with, and rebuilds the chunks lit by the current light sources.
+	 *
+	 * @param curve the falloff curve
+	 */
+	public void setFalloffCurve(@NotNull FalloffCurve curve) {
+		if (this.engine.getFalloffCurve() == curve) return;
+
+		this.engine.setFalloffCurve(curve);
+		this.engine.updateSpatialLookup();
+
+		var client = Minecraft.getInstance();
+		if (client != null && client.levelRenderer != null) {
+			this.dynamicLightSources.forEach(source -> source.lambdynlights$scheduleTrackedChunksRebuild(client.levelRenderer));
+			this.chunkRebuildScheduler.commit();
+		}
+	}
+
+	/**
+	 * Computes the dynamic light levels of a whole chunk section and of its one block wide border at once,
+	 * for renderers which mesh the chunk sections themselves.
+	 *
+	 * @param sectionX the X coordinate of the chunk section
+	 * @param sectionY the Y coordinate of the chunk section
+	 * @param sectionZ the Z coordinate of the chunk section
+	 * @param levels the array to write the dynamic light levels into, in sixteenths of a light level
+	 * @see DynamicLightingEngine#getSectionDynamicLightLevels(int, int, int, byte[])
+	 */
+	public void getSectionDynamicLightLevels(int sectionX, int sectionY, int sectionZ, byte @NotNull [] levels) {
+		this.engine.getSectionDynamicLightLevels(sectionX, sectionY, sectionZ, levels);
+	}
+
 	/**
 	 * Adds the light source to the tracked light sources.
 	 *
@@ -195,6 +347,8 @@ public class LambDynLights implements ClientModInitializer {
 		if (this.containsLightSource(lightSource))
 			return;
 		this.dynamicLightSources.add(lightSource);
+		this.updateScheduler.add(lightSource);
+		this.engine.addLightSource(lightSource);
 	}
 
 	/**
@@ -219,6 +373,98 @@ public class LambDynLights implements ClientModInitializer {
 		return this.dynamicLightSources.size();
 	}
 
+	/**
+	 * Returns the number of dynamic light sources the dynamic lighting engine can currently hold without growing.
+	 *
+	 * @return the capacity of the dynamic lighting engine
+	 */
+	public int getLightSourcesCapacity() {
+		return this.engine.getCapacity();
+	}
+
+	/**
+	 * Returns the number of dynamic light level queries which have been answered by the per-thread query caches.
+	 *
+	 * @return the number of query cache hits
+	 */
+	public long getQueryCacheHits() {
+		return this.engine.getQueryCacheHits();
+	}
+
+	/**
+	 * Returns the number of dynamic light level queries which had to be computed from the spatial lookup.
+	 *
+	 * @return the number of query cache misses
+	 */
+	public long getQueryCacheMisses() {
+		return this.engine.getQueryCacheMisses();
+	}
+
+	/**
+	 * Returns the name of the spatial index the dynamic lighting engine currently answers the dynamic light level queries with.
+	 *
+	 * @return the name of the spatial index
+	 */
+	public @NotNull String getSpatialIndexName() {
+		return this.engine.getSpatialIndexName();
+	}
+
+	/**
+	 * Returns the number of light sources the dynamic lighting engine currently answers the dynamic light level queries with,
+	 * once the co-located light sources are merged.
+	 *
+	 * @return the number of indexed light sources
+	 */
+	public int getIndexedLightSourcesCount() {
+		return this.engine.getIndexedLightSourcesCount();
+	}
+
+	/**
+	 * Returns the number of chunk section rebuilds the light sources requested before the last time they were scheduled.
+	 *
+	 * @return the number of requested chunk section rebuilds
+	 */
+	public int getLastChunkRebuildRequests() {
+		return this.chunkRebuildScheduler.getLastRequests();
+	}
+
+	/**
+	 * Returns the number of chunk section rebuilds requested before the last time they were scheduled
+	 * for chunk sections which were already waiting for their rebuild.
+	 *
+	 * @return the number of duplicate chunk section rebuild requests
+	 */
+	public int getLastDuplicateChunkRebuildRequests() {
+		return this.chunkRebuildScheduler.getLastDuplicates();
+	}
+
+	/**
+	 * Returns the number of chunk section rebuilds actually scheduled the last time, within the budget per frame.
+	 *
+	 * @return the number of scheduled chunk section rebuilds
+	 */
+	public int getLastChunkRebuilds() {
+		return this.chunkRebuildScheduler.getLastRebuilds();
+	}
+
+	/**
+	 * Returns the number of chunk sections waiting for their rebuild to be scheduled in the next frames.
+	 *
+	 * @return the number of pending chunk section rebuilds
+	 */
+	public int getChunkRebuildBacklog() {
+		return this.chunkRebuildScheduler.getBacklog();
+	}
+
+	/**
+	 * Returns the number of chunk sections out of view whose rebuild is deferred until they enter the view.
+	 *
+	 * @return the number of deferred chunk section rebuilds
+	 */
+	public int getDeferredChunkRebuilds() {
+		return this.chunkRebuildScheduler.getDeferred();
+	}
+
 	/**
 	 * Removes the light source from the tracked light sources.
 	 *
@@ -231,6 +477,8 @@ public class LambDynLights implements ClientModInitializer {
 			it = dynamicLightSources.next();
 			if (it.equals(lightSource)) {
 				dynamicLightSources.remove();
+				this.updateScheduler.remove(it);
+				this.engine.removeLightSource(it);
 				this.toClear.add(lightSource);
 				break;
 			}
@@ -250,6 +498,9 @@ public class LambDynLights implements ClientModInitializer {
 				it.resetDynamicLight();
 			this.toClear.add(it);
 		}
+
+		this.updateScheduler.clear();
+		this.engine.clearLightSources();
 	}
 
 	/**
@@ -264,6 +515,8 @@ public class LambDynLights implements ClientModInitializer {
 			it = dynamicLightSources.next();
 			if (filter.test(it)) {
 				dynamicLightSources.remove();
+				this.updateScheduler.remove(it);
+				this.engine.removeLightSource(it);
 				if (it.getLuminance() > 0)
 					it.resetDynamicLight();
 				this.toClear.add(it);
@@ -337,6 +590,8 @@ public class LambDynLights implements ClientModInitializer {
 
 	/**
 	 * Schedules a chunk rebuild at the specified chunk position.
+	 * <p>
+	 * The rebuild is deferred to the start of the next frames, along with the ones requested by the other light sources.
 	 *
 	 * @param renderer the renderer
 	 * @param chunkPos the chunk position
@@ -352,12 +607,28 @@ public class LambDynLights implements ClientModInitializer {
 	 * @param chunkPos the packed chunk position
 	 */
 	public static void scheduleChunkRebuild(@NotNull LevelRenderer renderer, long chunkPos) {
-		scheduleChunkRebuild(renderer, BlockPos.unpackLongX(chunkPos), BlockPos.unpackLongY(chunkPos), BlockPos.unpackLongZ(chunkPos));
+		INSTANCE.chunkRebuildScheduler.schedule(chunkPos);
+	}
+
+	/**
+	 * Schedules a chunk rebuild at the specified chunk position.
+	 *
+	 * @param chunkPos the packed chunk position
+	 */
+	public static void scheduleChunkRebuild(long chunkPos) {
+		INSTANCE.chunkRebuildScheduler.schedule(chunkPos);
 	}
 
+	/**
+	 * Schedules a chunk rebuild at the specified chunk position.
+	 *
+	 * @param renderer the renderer
+	 * @param x the X coordinate of the chunk
+	 * @param y the Y coordinate of the chunk
+	 * @param z the Z coordinate of the chunk
+	 */
 	public static void scheduleChunkRebuild(@NotNull LevelRenderer renderer, int x, int y, int z) {
-		if (Minecraft.getInstance().level != null)
-			((WorldRendererAccessor) renderer).lambdynlights$scheduleChunkRebuild(x, y, z, false);
+		INSTANCE.chunkRebuildScheduler.schedule(x, y, z);
 	}
 
 	/**
@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2024 LambdAurora <email@lambdaurora.dev>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the Lambda License. For more information,
+ * see the LICENSE file.
+ */
+
+package dev.lambdaurora.lambdynlights;
+
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Spreads the updates of the light sources over the frames, instead of updating all of them in a single frame.
+ * <p>
+ * The light sources are updated in rounds, each of them once per round, which lasts {@link #ROUND_DURATION_NANOS}.
+ * Every frame updates the share of the round due by then, and stops early once its time budget is spent,
+ * the remaining light sources are then updated by the next frames.
+ * The time budget is only exceeded if the round is over, so every light source still updates once per round.
+ *
+ * @author LambdAurora
+ * @version 3.3.0
+ * @since 3.3.0
+ */
+public final class LightSourceUpdateScheduler {
+	/**
+	 * The duration of a round of updates in nanoseconds, during which each light source is updated once.
+	 */
+	public static final long ROUND_DURATION_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+	// The light sources already updated this round come first, then the ones left to update this round,
+	// then the ones added during this round.
+	private final List<DynamicLightSource> sources = new ArrayList<>();
+	// Maps each light source to its index, so removing one doesn't have to search for it.
+	private final Reference2IntOpenHashMap<DynamicLightSource> indices = new Reference2IntOpenHashMap<>();
+	private long roundStart = 0;
+	// The index of the next light source to update, and the number of light sources of the current round.
+	private int cursor = 0;
+	private int roundSize = 0;
+	private int roundUpdates = 0;
+	private int lastRoundUpdates = 0;
+
+	/**
+	 * Adds a light source to update, starting with the next round.
+	 *
+	 * @param source the light source
+	 */
+	public void add(@NotNull DynamicLightSource source) {
+		if (this.indices.containsKey(source)) return;
+
+		this.indices.put(source, this.sources.size());
+		this.sources.add(source);
+	}
+
+	/**
+	 * Removes a light source.
+	 * <p>
+	 * The removed light source is replaced by the last light source of its part of the list, which is itself replaced
+	 * by the last light source of the next part, so the other light sources of the round are neither skipped nor updated twice
+	 * and the removal doesn't shift the whole list.
+	 *
+	 * @param source the light source
+	 */
+	public void remove(@NotNull DynamicLightSource source) {
+		if (!this.indices.containsKey(source)) return;
+
+		int index = this.indices.removeInt(source);
+
+		if (index < this.cursor) {
+			this.move(--this.cursor, index);
+			index = this.cursor;
+		}
+
+		if (index < this.roundSize) {
+			this.move(--this.roundSize, index);
+			index = this.roundSize;
+		}
+
+		int last = this.sources.size() - 1;
+		this.move(last, index);
+		this.sources.remove(last);
+	}
+
+	/**
+	 * Moves the light source at the given index to another index, overwriting the light source there.
+	 *
+	 * @param from the index of the light source to move
+	 * @param to the index to move the light source to
+	 */
+	private void move(int from, int to) {
+		if (from == to) return;
+
+		var source = this.sources.get(from);
+		this.sources.set(to, source);
+		this.indices.put(source, to);
+	}
+
+	/**
+	 * Removes every light source.
+	 */
+	public void clear() {
+		this.sources.clear();
+		this.indices.clear();
+		this.cursor = this.roundSize = 0;
+	}
+
+	/**
+	 * Updates the light sources due this frame.
+	 *
+	 * @param updater the update of a light source, which returns {@code true} if the light source changed
+	 * @param budgetNanos the time budget of this frame in nanoseconds
+	 */
+	public void update(@NotNull Predicate<DynamicLightSource> updater, long budgetNanos) {
+		long now = System.nanoTime();
+
+		if (this.cursor >= this.roundSize) {
+			if (now - this.roundStart < ROUND_DURATION_NANOS) return;
+
+			this.lastRoundUpdates = this.roundUpdates;
+			this.roundUpdates = 0;
+			// The rounds follow a steady cadence, unless they fell too far behind, so the frame rate doesn't stretch them.
+			this.roundStart = now - this.roundStart < 2 * ROUND_DURATION_NANOS ? this.roundStart + ROUND_DURATION_NANOS : now;
+			this.cursor = 0;
+			this.roundSize = this.sources.size();
+
+			if (this.roundSize == 0) return;
+		}
+
+		long elapsed = now - this.roundStart;
+		boolean overdue = elapsed >= ROUND_DURATION_NANOS;
+		// The number of light sources which should have been updated by now for the updates to be evenly spread over the round.
+		int due = overdue ? this.roundSize : (int) Math.min(this.roundSize, (this.roundSize * elapsed) / ROUND_DURATION_NANOS + 1);
+		int start = this.cursor;
+
+		while (this.cursor < due) {
+			if (!overdue && this.cursor != start && System.nanoTime() - now >= budgetNanos) break;
+
+			if (updater.test(this.sources.get(this.cursor++))) {
+				this.roundUpdates++;
+			}
+		}
+	}
+
+	/**
+	 * {@return the number of light sources which changed during the last complete round}
+	 */
+	public int getLastRoundUpdates() {
+		return this.lastRoundUpdates;
+	}
+}
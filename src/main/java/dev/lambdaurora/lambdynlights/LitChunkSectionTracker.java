@@ -0,0 +1,216 @@
+/*
+ * Copyright © 2024 LambdAurora <email@lambdaurora.dev>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the Lambda License. For more information,
+ * see the LICENSE file.
+ */
+
+package dev.lambdaurora.lambdynlights;
+
+import dev.lambdaurora.lambdynlights.engine.DynamicLightingEngine;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.ChunkSectionPos;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Tracks the chunk sections lit up by a light source and the footprint of the light it last gave them,
+ * so that only the chunk sections in which its light renders differently are rebuilt when it changes.
+ * <p>
+ * The footprints are computed from the position the light is rendered from, which is the center of the cluster
+ * of a light source merged with co-located ones. As the light source may join or leave a cluster with the next spatial lookup update,
+ * the tracked chunk sections are those lit up from either position.
+ * <p>
+ * The buffers are sized for the most chunk sections a light source can light up and are swapped on update,
+ * so tracking the lit chunk sections never allocates past construction.
+ *
+ * @author LambdAurora
+ * @version 3.3.0
+ * @since 3.3.0
+ */
+public final class LitChunkSectionTracker {
+	// The effective radius never exceeds the maximum radius, and the candidate chunk sections span the diameter of the light
+	// padded by the cluster offset and the one block wide border on both sides, which the chunk sections at either end may only partially cover.
+	private static final int MAX_SECTIONS_PER_AXIS =
+			(int) Math.ceil(2 * (DynamicLightSource.MAX_RADIUS + DynamicLightingEngine.MAX_CLUSTER_OFFSET + 1) / 16.0) + 1;
+	private static final int MAX_LIT_SECTIONS = MAX_SECTIONS_PER_AXIS * MAX_SECTIONS_PER_AXIS * MAX_SECTIONS_PER_AXIS;
+
+	// The packed positions of the lit chunk sections and the footprints of the light they were last given.
+	private long[] positions = new long[MAX_LIT_SECTIONS];
+	private long[] footprints = new long[MAX_LIT_SECTIONS];
+	private int count = 0;
+	// The buffers the next update fills, swapped with the tracked ones once done.
+	private long[] newPositions = new long[MAX_LIT_SECTIONS];
+	private long[] newFootprints = new long[MAX_LIT_SECTIONS];
+	// Whether the tracked footprints are those of the light the chunk sections were last rebuilt with.
+	private boolean footprintsValid = true;
+
+	/**
+	 * Updates the lit chunk sections from the new state of the light source,
+	 * and requests the rebuild of the chunk sections in which its light renders differently.
+	 *
+	 * @param engine the dynamic lighting engine
+	 * @param x the X coordinate of the light source
+	 * @param y the Y coordinate of the light source
+	 * @param z the Z coordinate of the light source
+	 * @param luminance the luminance of the light source
+	 * @param lightRadius the radius of the light source
+	 * @param clustered {@code true} if the light source is merged into a cluster, or {@code false} otherwise
+	 * @param rebuilds the consumer of the packed positions of the chunk sections to rebuild
+	 * @param rebuildRemoved {@code true} if the chunk sections no longer lit up should be rebuilt, or {@code false} otherwise
+	 * @return {@code true} if the light renders differently in any chunk section, or {@code false} otherwise
+	 */
+	public boolean update(
+			@NotNull DynamicLightingEngine engine,
+			double x, double y, double z, int luminance, double lightRadius, boolean clustered,
+			@NotNull LongConsumer rebuilds, boolean rebuildRemoved
+	) {
+		long[] newPositions = this.newPositions;
+		long[] newFootprints = this.newFootprints;
+		int newCount = 0;
+		boolean changed = false;
+
+		double radius = engine.getEffectiveRadius(luminance, lightRadius);
+		if (radius >= 0) {
+			// The light is rendered from the center of the cluster, which is at most the cluster offset away from the light source.
+			double renderedX = clustered ? DynamicLightingEngine.clusterCenter(x) : x;
+			double renderedY = clustered ? DynamicLightingEngine.clusterCenter(y) : y;
+			double renderedZ = clustered ? DynamicLightingEngine.clusterCenter(z) : z;
+			radius += DynamicLightingEngine.MAX_CLUSTER_OFFSET;
+
+			// Only the chunk sections the sphere of light intersects can be lit up, dim light sources rarely
+			// reach past their own chunk section while far-reaching ones may reach a few chunk sections away.
+			// The bounds include the one block wide border of the chunk sections, which their meshes sample.
+			int minX = ChunkSectionPos.blockToSectionCoord(x - radius - 1);
+			int minY = ChunkSectionPos.blockToSectionCoord(y - radius - 1);
+			int minZ = ChunkSectionPos.blockToSectionCoord(z - radius - 1);
+			int maxX = ChunkSectionPos.blockToSectionCoord(x + radius + 1);
+			int maxY = ChunkSectionPos.blockToSectionCoord(y + radius + 1);
+			int maxZ = ChunkSectionPos.blockToSectionCoord(z + radius + 1);
+
+			for (int sectionZ = minZ; sectionZ <= maxZ; sectionZ++) {
+				for (int sectionY = minY; sectionY <= maxY; sectionY++) {
+					for (int sectionX = minX; sectionX <= maxX; sectionX++) {
+						if (!isChunkSectionLit(sectionX, sectionY, sectionZ, x, y, z, radius))
+							continue;
+
+						long sectionPos = BlockPos.asLong(sectionX, sectionY, sectionZ);
+						long footprint = engine.computeLightFootprint(
+								renderedX, renderedY, renderedZ, luminance, lightRadius, sectionX, sectionY, sectionZ
+						);
+
+						// Only rebuild the chunk sections in which the light would render differently.
+						int previous = indexOf(this.positions, this.count, sectionPos);
+						if (previous == -1 || !this.footprintsValid || this.footprints[previous] != footprint) {
+							rebuilds.accept(sectionPos);
+							changed = true;
+						}
+
+						newPositions[newCount] = sectionPos;
+						newFootprints[newCount] = footprint;
+						newCount++;
+					}
+				}
+			}
+		}
+
+		// Rebuild the chunk sections no longer lit up, the ones still lit up have been requested above.
+		if (rebuildRemoved) {
+			for (int i = 0; i < this.count; i++) {
+				long sectionPos = this.positions[i];
+
+				if (indexOf(newPositions, newCount, sectionPos) == -1) {
+					rebuilds.accept(sectionPos);
+					changed = true;
+				}
+			}
+		}
+
+		this.newPositions = this.positions;
+		this.newFootprints = this.footprints;
+		this.positions = newPositions;
+		this.footprints = newFootprints;
+		this.count = newCount;
+		this.footprintsValid = true;
+		return changed;
+	}
+
+	/**
+	 * Passes the packed position of every lit chunk section to the given consumer.
+	 *
+	 * @param consumer the consumer of the packed chunk section positions
+	 */
+	public void forEach(@NotNull LongConsumer consumer) {
+		for (int i = 0; i < this.count; i++) {
+			consumer.accept(this.positions[i]);
+		}
+	}
+
+	/**
+	 * Forgets the footprints of the lit chunk sections while still tracking them,
+	 * so the next update requests the rebuild of every chunk section it lights up.
+	 * <p>
+	 * This is needed once the lit chunk sections are rebuilt with another light than the tracked one,
+	 * like when the light source joins or leaves a cluster.
+	 */
+	public void invalidateFootprints() {
+		this.footprintsValid = false;
+	}
+
+	/**
+	 * Forgets every lit chunk section along with their footprints, so the next update requests the rebuild of all of them.
+	 */
+	public void clear() {
+		this.count = 0;
+	}
+
+	/**
+	 * {@return the number of lit chunk sections}
+	 */
+	public int size() {
+		return this.count;
+	}
+
+	/**
+	 * Returns whether the light of a light source reaches the specified chunk section.
+	 * <p>
+	 * The mesh of a chunk section also samples the light of the blocks right outside of it,
+	 * so the chunk section is lit up if any block of it or of its one block wide border is within the radius of the light,
+	 * whose distance is measured to the center of the blocks.
+	 *
+	 * @param sectionX the X coordinate of the chunk section
+	 * @param sectionY the Y coordinate of the chunk section
+	 * @param sectionZ the Z coordinate of the chunk section
+	 * @param x the X coordinate of the light source
+	 * @param y the Y coordinate of the light source
+	 * @param z the Z coordinate of the light source
+	 * @param radius the effective radius of the light source
+	 * @return {@code true} if the light reaches the chunk section, or {@code false} otherwise
+	 */
+	public static boolean isChunkSectionLit(int sectionX, int sectionY, int sectionZ, double x, double y, double z, double radius) {
+		double dx = distanceToSection(sectionX, x);
+		double dy = distanceToSection(sectionY, y);
+		double dz = distanceToSection(sectionZ, z);
+		return dx * dx + dy * dy + dz * dz <= radius * radius;
+	}
+
+	private static double distanceToSection(int section, double coordinate) {
+		double min = (section << 4) - 0.5;
+		double max = min + 17.0;
+		if (coordinate < min) return min - coordinate;
+		else if (coordinate > max) return coordinate - max;
+		else return 0.0;
+	}
+
+	private static int indexOf(long[] positions, int count, long pos) {
+		// A light source lights up at most a few dozens of chunk sections, a linear search is faster than hashing.
+		for (int i = 0; i < count; i++) {
+			if (positions[i] == pos) return i;
+		}
+
+		return -1;
+	}
+}
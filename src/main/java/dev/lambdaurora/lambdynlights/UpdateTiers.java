@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2024 LambdAurora <email@lambdaurora.dev>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the Lambda License. For more information,
+ * see the LICENSE file.
+ */
+
+package dev.lambdaurora.lambdynlights;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Represents the distance tiers of the update rate of the light sources.
+ * <p>
+ * Each tier is a distance from the camera in blocks past which the light sources update at most once per a given delay,
+ * so far away light sources cost less than the ones around the player, whose changes are the most visible.
+ *
+ * @author LambdAurora
+ * @version 3.3.0
+ * @since 3.3.0
+ */
+public final class UpdateTiers {
+	/**
+	 * The default tiers, as pairs of distance in blocks and delay in milliseconds.
+	 */
+	public static final UpdateTiers DEFAULT = new UpdateTiers(new int[]{32, 64, 128}, new int[]{250, 500, 1000});
+
+	// Sorted by ascending distance.
+	private final int[] distances;
+	private final double[] distancesSquared;
+	private final int[] delays;
+
+	private UpdateTiers(int[] distances, int[] delays) {
+		this.distances = distances;
+		this.distancesSquared = new double[distances.length];
+		this.delays = delays;
+
+		for (int i = 0; i < distances.length; i++) {
+			this.distancesSquared[i] = (double) distances[i] * distances[i];
+		}
+	}
+
+	/**
+	 * Returns the update delay of a light source at the given squared distance from the camera.
+	 *
+	 * @param distanceSquared the squared distance between the light source and the camera, in blocks
+	 * @return the update delay in milliseconds
+	 */
+	public int getDelay(double distanceSquared) {
+		int delay = 0;
+
+		for (int i = 0; i < this.distancesSquared.length && distanceSquared > this.distancesSquared[i]; i++) {
+			delay = this.delays[i];
+		}
+
+		return delay;
+	}
+
+	/**
+	 * {@return {@code true} if there are no tiers, so every light source updates at full rate, or {@code false} otherwise}
+	 */
+	public boolean isEmpty() {
+		return this.distances.length == 0;
+	}
+
+	/**
+	 * {@return these tiers as a list of pairs of distance in blocks and delay in milliseconds, as stored in the configuration}
+	 */
+	public @NotNull List<List<Integer>> serialize() {
+		var tiers = new ArrayList<List<Integer>>(this.distances.length);
+
+		for (int i = 0; i < this.distances.length; i++) {
+			tiers.add(List.of(this.distances[i], this.delays[i]));
+		}
+
+		return tiers;
+	}
+
+	/**
+	 * Reads the tiers from the configuration.
+	 *
+	 * @param value the list of pairs of distance in blocks and delay in milliseconds
+	 * @return the tiers if valid, or {@code null} otherwise
+	 */
+	public static @Nullable UpdateTiers deserialize(@Nullable Object value) {
+		if (!(value instanceof List<?> list)) return null;
+
+		long[] tiers = new long[list.size()];
+
+		for (int i = 0; i < tiers.length; i++) {
+			if (!(list.get(i) instanceof List<?> tier) || tier.size() != 2
+					|| !(tier.get(0) instanceof Number distance) || !(tier.get(1) instanceof Number delay)
+					|| distance.intValue() < 0 || delay.intValue() < 0)
+				return null;
+
+			// Packed so sorting by distance keeps each delay with its distance.
+			tiers[i] = (long) distance.intValue() << 32 | delay.intValue();
+		}
+
+		Arrays.sort(tiers);
+
+		int[] distances = new int[tiers.length];
+		int[] delays = new int[tiers.length];
+		for (int i = 0; i < tiers.length; i++) {
+			distances[i] = (int) (tiers[i] >>> 32);
+			delays[i] = (int) tiers[i];
+		}
+
+		return new UpdateTiers(distances, delays);
+	}
+}
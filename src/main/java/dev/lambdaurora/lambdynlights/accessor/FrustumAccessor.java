@@ -0,0 +1,32 @@
+/*
+ * Copyright © 2024 LambdAurora <email@lambdaurora.dev>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the Lambda License. For more information,
+ * see the LICENSE file.
+ */
+
+package dev.lambdaurora.lambdynlights.accessor;
+
+/**
+ * Represents an accessor for Frustum.
+ *
+ * @author LambdAurora
+ * @version 3.3.0
+ * @since 3.3.0
+ */
+public interface FrustumAccessor {
+	/**
+	 * Returns whether the given box is in the frustum, without allocating a box.
+	 *
+	 * @param minX the minimum X coordinate of the box
+	 * @param minY the minimum Y coordinate of the box
+	 * @param minZ the minimum Z coordinate of the box
+	 * @param maxX the maximum X coordinate of the box
+	 * @param maxY the maximum Y coordinate of the box
+	 * @param maxZ the maximum Z coordinate of the box
+	 * @return {@code true} if the box is in the frustum, else {@code false}
+	 */
+	boolean lambdynlights$isVisible(double minX, double minY, double minZ, double maxX, double maxY, double maxZ);
+}
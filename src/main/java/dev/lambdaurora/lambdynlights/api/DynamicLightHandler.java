@@ -9,6 +9,7 @@
 
 package dev.lambdaurora.lambdynlights.api;
 
+import dev.lambdaurora.lambdynlights.DynamicLightSource;
 import dev.lambdaurora.lambdynlights.LambDynLights;
 import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.LivingEntity;
@@ -23,7 +24,7 @@ import java.util.function.Function;
  *
  * @param <T> The type of the light source.
  * @author LambdAurora
- * @version 3.1.2
+ * @version 3.3.0
  * @since 1.1.0
  */
 public interface DynamicLightHandler<T> {
@@ -35,6 +36,17 @@ public interface DynamicLightHandler<T> {
 	 */
 	int getLuminance(T lightSource);
 
+	/**
+	 * Returns the radius of the light source in blocks, past which it gives no light,
+	 * see {@link DynamicLightSource#getDynamicLightRadius()} for how it is bounded and what it costs.
+	 *
+	 * @param lightSource The light source.
+	 * @return The radius.
+	 */
+	default double getRadius(T lightSource) {
+		return DynamicLightSource.DEFAULT_RADIUS;
+	}
+
 	/**
 	 * Returns whether the light source is water-sensitive or not.
 	 *
@@ -69,6 +81,36 @@ public interface DynamicLightHandler<T> {
 		};
 	}
 
+	/**
+	 * Returns a dynamic light handler.
+	 *
+	 * @param luminance The luminance function.
+	 * @param waterSensitive The water sensitive function.
+	 * @param radius The radius function.
+	 * @param <T> The type of the entity.
+	 * @return The completed handler.
+	 */
+	static <T extends Entity> @NotNull DynamicLightHandler<T> makeHandler(
+			Function<T, Integer> luminance, Function<T, Boolean> waterSensitive, Function<T, Double> radius
+	) {
+		return new DynamicLightHandler<>() {
+			@Override
+			public int getLuminance(T lightSource) {
+				return luminance.apply(lightSource);
+			}
+
+			@Override
+			public double getRadius(T lightSource) {
+				return radius.apply(lightSource);
+			}
+
+			@Override
+			public boolean isWaterSensitive(T lightSource) {
+				return waterSensitive.apply(lightSource);
+			}
+		};
+	}
+
 	/**
 	 * Returns a living entity dynamic light handler.
 	 *
@@ -77,12 +119,20 @@ public interface DynamicLightHandler<T> {
 	 * @return The completed handler.
 	 */
 	static <T extends LivingEntity> @NotNull DynamicLightHandler<T> makeLivingEntityHandler(@NotNull DynamicLightHandler<T> handler) {
-		return entity -> {
-			int luminance = 0;
-			for (var equipped : entity.getAllSlots()) {
-				luminance = Math.max(luminance, LambDynLights.getLuminanceFromItemStack(equipped, entity.isSubmergedInWater()));
+		return new DynamicLightHandler<>() {
+			@Override
+			public int getLuminance(T entity) {
+				int luminance = 0;
+				for (var equipped : entity.getAllSlots()) {
+					luminance = Math.max(luminance, LambDynLights.getLuminanceFromItemStack(equipped, entity.isSubmergedInWater()));
+				}
+				return Math.max(luminance, handler.getLuminance(entity));
+			}
+
+			@Override
+			public double getRadius(T entity) {
+				return handler.getRadius(entity);
 			}
-			return Math.max(luminance, handler.getLuminance(entity));
 		};
 	}
 
@@ -113,6 +163,11 @@ public interface DynamicLightHandler<T> {
 				return luminance;
 			}
 
+			@Override
+			public double getRadius(T entity) {
+				return handler != null ? handler.getRadius(entity) : DynamicLightSource.DEFAULT_RADIUS;
+			}
+
 			@Override
 			public boolean isWaterSensitive(T lightSource) {
 				return true;
@@ -9,6 +9,7 @@
 
 package dev.lambdaurora.lambdynlights.api;
 
+import dev.lambdaurora.lambdynlights.DynamicLightSource;
 import dev.lambdaurora.lambdynlights.LambDynLights;
 import dev.lambdaurora.lambdynlights.accessor.DynamicLightHandlerHolder;
 import net.minecraft.client.Minecraft;
@@ -20,7 +21,7 @@ import org.jetbrains.annotations.Nullable;
 
 /**
  * @author LambdAurora
- * @version 3.2.2
+ * @version 3.3.0
  * @since 1.1.0
  */
 public final class DynamicLightHandlers {
@@ -81,7 +82,17 @@ public final class DynamicLightHandlers {
 	private static <T> void register(DynamicLightHandlerHolder<T> holder, DynamicLightHandler<T> handler) {
 		var registeredHandler = holder.lambdynlights$getDynamicLightHandler();
 		if (registeredHandler != null) {
-			DynamicLightHandler<T> newHandler = entity -> Math.max(registeredHandler.getLuminance(entity), handler.getLuminance(entity));
+			DynamicLightHandler<T> newHandler = new DynamicLightHandler<>() {
+				@Override
+				public int getLuminance(T lightSource) {
+					return Math.max(registeredHandler.getLuminance(lightSource), handler.getLuminance(lightSource));
+				}
+
+				@Override
+				public double getRadius(T lightSource) {
+					return Math.max(registeredHandler.getRadius(lightSource), handler.getRadius(lightSource));
+				}
+			};
 			holder.lambdynlights$setDynamicLightHandler(newHandler);
 		} else {
 			holder.lambdynlights$setDynamicLightHandler(handler);
@@ -141,4 +152,20 @@ public final class DynamicLightHandlers {
 			return 0;
 		return handler.getLuminance(entity);
 	}
+
+	/**
+	 * Returns the radius of the dynamic light of an entity.
+	 *
+	 * @param entity the entity
+	 * @param <T> the type of the entity
+	 * @return the radius in blocks
+	 * @see DynamicLightHandler#getRadius(Object)
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends Entity> double getRadiusFrom(T entity) {
+		var handler = (DynamicLightHandler<T>) getDynamicLightHandler(entity.getType());
+		if (handler == null)
+			return DynamicLightSource.DEFAULT_RADIUS;
+		return handler.getRadius(entity);
+	}
 }
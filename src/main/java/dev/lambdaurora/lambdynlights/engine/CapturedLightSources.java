@@ -0,0 +1,228 @@
+/*
+ * Copyright © 2024 LambdAurora <email@lambdaurora.dev>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the Lambda License. For more information,
+ * see the LICENSE file.
+ */
+
+package dev.lambdaurora.lambdynlights.engine;
+
+import java.util.Arrays;
+
+/**
+ * Represents the light sources captured from the spatial lookup of the engine to build a {@link SpatialIndex} from,
+ * along with statistics on their distribution to pick the spatial index with.
+ * <p>
+ * Only the light sources which emit visible light are captured.
+ * <p>
+ * The engine captures the light sources cell by cell and records the run of light sources each cell gave,
+ * so only the runs of the cells which changed need to be replaced in an incrementally updated {@link GridSpatialIndex}.
+ *
+ * @author LambdAurora
+ * @version 3.3.0
+ * @since 3.3.0
+ */
+final class CapturedLightSources {
+	double[] x;
+	double[] y;
+	double[] z;
+	int[] luminance;
+	// The squared effective radii in fixed-point.
+	int[] radiiSquared;
+	// The inverses of the squared radii.
+	long[] inverseRadiiSquared;
+	private int size = 0;
+	// The recorded cells of the spatial lookup of the engine, along with the start and the end of their run of light sources.
+	private long[] runCells = new long[0];
+	private int[] runStarts = new int[0];
+	private int[] runEnds = new int[0];
+	private int runCount = 0;
+	private int maxRadiusSquared = 0;
+	private int maxCellPopulation = 0;
+	private double minX = Double.POSITIVE_INFINITY;
+	private double minY = Double.POSITIVE_INFINITY;
+	private double minZ = Double.POSITIVE_INFINITY;
+	private double maxX = Double.NEGATIVE_INFINITY;
+	private double maxY = Double.NEGATIVE_INFINITY;
+	private double maxZ = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * Creates a new container of captured light sources.
+	 *
+	 * @param capacity the maximum number of light sources
+	 */
+	CapturedLightSources(int capacity) {
+		this.allocate(capacity);
+	}
+
+	private void allocate(int capacity) {
+		this.x = new double[capacity];
+		this.y = new double[capacity];
+		this.z = new double[capacity];
+		this.luminance = new int[capacity];
+		this.radiiSquared = new int[capacity];
+		this.inverseRadiiSquared = new long[capacity];
+	}
+
+	/**
+	 * Removes every captured light source and every recorded cell, so this instance can be reused for another capture.
+	 */
+	void clear() {
+		this.size = 0;
+		this.maxRadiusSquared = 0;
+		this.maxCellPopulation = 0;
+		this.minX = this.minY = this.minZ = Double.POSITIVE_INFINITY;
+		this.maxX = this.maxY = this.maxZ = Double.NEGATIVE_INFINITY;
+		this.runCount = 0;
+	}
+
+	/**
+	 * Makes sure this instance can hold the given number of light sources.
+	 * <p>
+	 * This must be called while this instance is empty, as the light sources are not kept if the arrays are reallocated.
+	 *
+	 * @param capacity the number of light sources
+	 */
+	void ensureCapacity(int capacity) {
+		if (this.x.length < capacity) {
+			this.allocate(capacity);
+		}
+	}
+
+	/**
+	 * Adds a light source.
+	 *
+	 * @param x the X coordinate of the light source
+	 * @param y the Y coordinate of the light source
+	 * @param z the Z coordinate of the light source
+	 * @param luminance the luminance of the light source, between {@code 0} and {@code 15}
+	 * @param radiusSquared the squared effective radius of the light source in fixed-point
+	 * @param inverseRadiusSquared the inverse of the squared radius of the light source
+	 */
+	void add(double x, double y, double z, int luminance, int radiusSquared, long inverseRadiusSquared) {
+		int index = this.size++;
+		this.x[index] = x;
+		this.y[index] = y;
+		this.z[index] = z;
+		this.luminance[index] = luminance;
+		this.radiiSquared[index] = radiusSquared;
+		this.inverseRadiiSquared[index] = inverseRadiusSquared;
+
+		this.maxRadiusSquared = Math.max(this.maxRadiusSquared, radiusSquared);
+		this.minX = Math.min(this.minX, x);
+		this.minY = Math.min(this.minY, y);
+		this.minZ = Math.min(this.minZ, z);
+		this.maxX = Math.max(this.maxX, x);
+		this.maxY = Math.max(this.maxY, y);
+		this.maxZ = Math.max(this.maxZ, z);
+	}
+
+	/**
+	 * Records the light sources added since the given index as the run of light sources captured from a cell
+	 * of the spatial lookup of the engine, which may be empty.
+	 *
+	 * @param cellKey the packed key of the cell
+	 * @param start the index of the first light source captured from the cell
+	 */
+	void recordCell(long cellKey, int start) {
+		if (this.runCount == this.runStarts.length) {
+			int capacity = Math.max(16, this.runCount * 2);
+			this.runCells = Arrays.copyOf(this.runCells, capacity);
+			this.runStarts = Arrays.copyOf(this.runStarts, capacity);
+			this.runEnds = Arrays.copyOf(this.runEnds, capacity);
+		}
+
+		this.runCells[this.runCount] = cellKey;
+		this.runStarts[this.runCount] = start;
+		this.runEnds[this.runCount] = this.size;
+		this.runCount++;
+		this.maxCellPopulation = Math.max(this.maxCellPopulation, this.size - start);
+	}
+
+	/**
+	 * {@return the number of recorded cells}
+	 */
+	int runCount() {
+		return this.runCount;
+	}
+
+	/**
+	 * {@return the packed key of the given recorded cell}
+	 *
+	 * @param run the index of the recorded cell
+	 */
+	long runCell(int run) {
+		return this.runCells[run];
+	}
+
+	/**
+	 * {@return the index of the first light source of the given recorded cell, inclusive}
+	 *
+	 * @param run the index of the recorded cell
+	 */
+	int runStart(int run) {
+		return this.runStarts[run];
+	}
+
+	/**
+	 * {@return the index of the last light source of the given recorded cell, exclusive}
+	 *
+	 * @param run the index of the recorded cell
+	 */
+	int runEnd(int run) {
+		return this.runEnds[run];
+	}
+
+	/**
+	 * {@return the number of captured light sources}
+	 */
+	int size() {
+		return this.size;
+	}
+
+	/**
+	 * {@return the largest squared effective radius of the captured light sources, in fixed-point}
+	 */
+	int maxRadiusSquared() {
+		return this.maxRadiusSquared;
+	}
+
+	/**
+	 * {@return the largest number of light sources captured from a single cell of the spatial lookup of the engine}
+	 */
+	int maxCellPopulation() {
+		return this.maxCellPopulation;
+	}
+
+	/**
+	 * {@return the largest extent of the captured light sources on any axis, in blocks}
+	 */
+	double extent() {
+		if (this.size == 0) return 0;
+
+		return Math.max(this.maxX - this.minX, Math.max(this.maxY - this.minY, this.maxZ - this.minZ));
+	}
+
+	/**
+	 * {@return the minimum X coordinate of the captured light sources}
+	 */
+	double minX() {
+		return this.minX;
+	}
+
+	/**
+	 * {@return the minimum Y coordinate of the captured light sources}
+	 */
+	double minY() {
+		return this.minY;
+	}
+
+	/**
+	 * {@return the minimum Z coordinate of the captured light sources}
+	 */
+	double minZ() {
+		return this.minZ;
+	}
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright © 2024 LambdAurora <email@lambdaurora.dev>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the Lambda License. For more information,
+ * see the LICENSE file.
+ */
+
+package dev.lambdaurora.lambdynlights.engine;
+
+import it.unimi.dsi.fastutil.HashCommon;
+
+import java.util.Arrays;
+
+/**
+ * Represents an open-addressing map from packed cell coordinates to an integer value.
+ * <p>
+ * Unlike a plain hashed table, distinct cells never share a slot so a lookup never sees the content of an unrelated cell.
+ *
+ * @author LambdAurora
+ * @version 3.3.0
+ * @since 3.3.0
+ */
+final class CellMap {
+	/**
+	 * The value returned when a cell is not present in the map, whose value is {@value}.
+	 */
+	public static final int MISSING = -1;
+	// Packed cells never have their sign bit set, so this key can never collide with a valid cell.
+	private static final long EMPTY_KEY = Long.MIN_VALUE;
+
+	private long[] keys;
+	private int[] values;
+	private int mask;
+	private int size = 0;
+
+	/**
+	 * Creates a new cell map.
+	 *
+	 * @param expectedSize the number of cells this map should be able to hold without reallocating
+	 */
+	CellMap(int expectedSize) {
+		this.allocate(tableSize(expectedSize));
+	}
+
+	/**
+	 * Packs the given cell coordinates into a single key.
+	 * <p>
+	 * The X and Z coordinates are stored on 22 bits each, and the Y coordinate on 19 bits, which covers the whole world
+	 * up to its 30 million blocks border for any cell size of at least {@code 16}.
+	 *
+	 * @param cellX the X coordinate of the cell
+	 * @param cellY the Y coordinate of the cell
+	 * @param cellZ the Z coordinate of the cell
+	 * @return the packed cell key
+	 */
+	static long pack(int cellX, int cellY, int cellZ) {
+		return ((long) cellX & 0x3FFFFFL) << 41 | ((long) cellZ & 0x3FFFFFL) << 19 | ((long) cellY & 0x7FFFFL);
+	}
+
+	/**
+	 * {@return the X coordinate of the given packed cell key}
+	 *
+	 * @param key the packed cell key
+	 * @see #pack(int, int, int)
+	 */
+	static int unpackX(long key) {
+		return (int) (key << 1 >> 42);
+	}
+
+	/**
+	 * {@return the Y coordinate of the given packed cell key}
+	 *
+	 * @param key the packed cell key
+	 * @see #pack(int, int, int)
+	 */
+	static int unpackY(long key) {
+		return (int) (key << 45 >> 45);
+	}
+
+	/**
+	 * {@return the Z coordinate of the given packed cell key}
+	 *
+	 * @param key the packed cell key
+	 * @see #pack(int, int, int)
+	 */
+	static int unpackZ(long key) {
+		return (int) (key << 23 >> 42);
+	}
+
+	/**
+	 * {@return the number of cells in this map}
+	 */
+	int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the value associated with the given cell.
+	 *
+	 * @param key the packed cell key
+	 * @return the value associated with the cell, or {@link #MISSING} if the cell is not present
+	 */
+	int get(long key) {
+		int slot = this.slot(key);
+
+		long current;
+		while ((current = this.keys[slot]) != EMPTY_KEY) {
+			if (current == key) return this.values[slot];
+			slot = (slot + 1) & this.mask;
+		}
+
+		return MISSING;
+	}
+
+	/**
+	 * Associates the given value to the given cell.
+	 *
+	 * @param key the packed cell key
+	 * @param value the value to associate to the cell
+	 * @return the value previously associated with the cell, or {@link #MISSING} if the cell was not present
+	 */
+	int put(long key, int value) {
+		int slot = this.slot(key);
+
+		long current;
+		while ((current = this.keys[slot]) != EMPTY_KEY) {
+			if (current == key) {
+				int previous = this.values[slot];
+				this.values[slot] = value;
+				return previous;
+			}
+
+			slot = (slot + 1) & this.mask;
+		}
+
+		this.keys[slot] = key;
+		this.values[slot] = value;
+		this.size++;
+		return MISSING;
+	}
+
+	/**
+	 * Removes the given cell from this map.
+	 *
+	 * @param key the packed cell key
+	 * @return the value which was associated with the cell, or {@link #MISSING} if the cell was not present
+	 */
+	int remove(long key) {
+		int slot = this.slot(key);
+
+		long current;
+		while ((current = this.keys[slot]) != EMPTY_KEY) {
+			if (current == key) {
+				int value = this.values[slot];
+				this.shiftKeys(slot);
+				this.size--;
+				return value;
+			}
+
+			slot = (slot + 1) & this.mask;
+		}
+
+		return MISSING;
+	}
+
+	/**
+	 * {@return the size of the underlying table, to iterate over the cells with {@link #isEmptyAt(int)}}
+	 */
+	int tableSize() {
+		return this.keys.length;
+	}
+
+	/**
+	 * {@return {@code true} if there is no cell at the given table index, or {@code false} otherwise}
+	 *
+	 * @param index the table index
+	 */
+	boolean isEmptyAt(int index) {
+		return this.keys[index] == EMPTY_KEY;
+	}
+
+	/**
+	 * {@return the packed key of the cell at the given table index}
+	 *
+	 * @param index the table index
+	 */
+	long keyAt(int index) {
+		return this.keys[index];
+	}
+
+	/**
+	 * {@return the value associated with the cell at the given table index}
+	 *
+	 * @param index the table index
+	 */
+	int valueAt(int index) {
+		return this.values[index];
+	}
+
+	/**
+	 * Sets the value associated with the cell at the given table index.
+	 *
+	 * @param index the table index
+	 * @param value the new value
+	 */
+	void setValueAt(int index, int value) {
+		this.values[index] = value;
+	}
+
+	/**
+	 * Makes sure this map can hold the given number of cells without going over its maximum load factor.
+	 * <p>
+	 * The table is only reallocated if its size changes, the cells already present are kept.
+	 *
+	 * @param expectedSize the number of cells this map should be able to hold
+	 */
+	void ensureCapacity(int expectedSize) {
+		int tableSize = tableSize(Math.max(expectedSize, this.size));
+		if (tableSize == this.keys.length) return;
+
+		long[] oldKeys = this.keys;
+		int[] oldValues = this.values;
+		this.allocate(tableSize);
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			long key = oldKeys[i];
+			if (key == EMPTY_KEY) continue;
+
+			int slot = this.slot(key);
+			while (this.keys[slot] != EMPTY_KEY) {
+				slot = (slot + 1) & this.mask;
+			}
+
+			this.keys[slot] = key;
+			this.values[slot] = oldValues[i];
+		}
+	}
+
+	/**
+	 * Removes every cell from this map.
+	 */
+	void clear() {
+		if (this.size == 0) return;
+
+		Arrays.fill(this.keys, EMPTY_KEY);
+		this.size = 0;
+	}
+
+	/**
+	 * Shifts the entries following a removed one back into place, so the probe sequences stay unbroken without tombstones.
+	 *
+	 * @param index the table index of the removed entry
+	 */
+	private void shiftKeys(int index) {
+		int last;
+		long current;
+
+		for (;;) {
+			index = ((last = index) + 1) & this.mask;
+
+			for (;;) {
+				if ((current = this.keys[index]) == EMPTY_KEY) {
+					this.keys[last] = EMPTY_KEY;
+					return;
+				}
+
+				int slot = this.slot(current);
+				// Stop if the entry at the index can be moved to the freed position without breaking its probe sequence.
+				if (last <= index ? last >= slot || slot > index : last >= slot && slot > index) break;
+				index = (index + 1) & this.mask;
+			}
+
+			this.keys[last] = current;
+			this.values[last] = this.values[index];
+		}
+	}
+
+	private void allocate(int tableSize) {
+		this.keys = new long[tableSize];
+		this.values = new int[tableSize];
+		this.mask = tableSize - 1;
+		Arrays.fill(this.keys, EMPTY_KEY);
+	}
+
+	private static int tableSize(int expectedSize) {
+		// Keep the load factor at or below 0.5 to keep the probe sequences short.
+		return HashCommon.nextPowerOfTwo(Math.max(expectedSize, 2) * 2);
+	}
+
+	private int slot(long key) {
+		return (int) HashCommon.mix(key) & this.mask;
+	}
+}
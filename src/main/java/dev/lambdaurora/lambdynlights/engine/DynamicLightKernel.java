@@ -0,0 +1,122 @@
+/*
+ * Copyright © 2024 LambdAurora <email@lambdaurora.dev>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the Lambda License. For more information,
+ * see the LICENSE file.
+ */
+
+package dev.lambdaurora.lambdynlights.engine;
+
+import dev.lambdaurora.lambdynlights.LambDynLights;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Represents the computation of the dynamic light level a run of light sources produces at a given position.
+ * <p>
+ * The scalar implementation is always available. A vectorized implementation using the incubating Vector API can be enabled
+ * with the {@value #VECTORIZED_PROPERTY} system property, it requires the {@code jdk.incubator.vector} module
+ * to be added to the game with {@code --add-modules jdk.incubator.vector}, or else the scalar implementation is used.
+ * <p>
+ * The vectorized implementation is compiled in its own {@code vector} source set, which is the only one needing the incubating module,
+ * and is thus only ever loaded reflectively.
+ *
+ * @author LambdAurora
+ * @version 3.3.0
+ * @since 3.3.0
+ */
+interface DynamicLightKernel {
+	/**
+	 * The system property to set to {@code true} to enable the vectorized kernel, whose value is {@value}.
+	 */
+	String VECTORIZED_PROPERTY = "lambdynlights.engine.vectorized";
+
+	/**
+	 * The scalar kernel.
+	 */
+	DynamicLightKernel SCALAR = (
+			x, y, z,
+			sourcesX, sourcesY, sourcesZ, luminance, radiiSquared, inverseRadiiSquared,
+			start, end,
+			falloff,
+			currentLevel
+	) -> {
+		for (int i = start; i < end; i++) {
+			// The light sources are sorted by descending luminance, the next ones can't give more light than their luminance.
+			if (luminance[i] << 4 <= currentLevel) break;
+
+			int dx = x - sourcesX[i];
+			int dy = y - sourcesY[i];
+			int dz = z - sourcesZ[i];
+			int distanceSquared = dx * dx + dy * dy + dz * dz;
+
+			if (distanceSquared <= radiiSquared[i]) {
+				int level = falloff.level(luminance[i], FalloffTable.relativeDistanceSquared(distanceSquared, inverseRadiiSquared[i]));
+				currentLevel = Math.max(currentLevel, level);
+			}
+		}
+
+		return currentLevel;
+	};
+
+	/**
+	 * Returns the maximum dynamic light level produced at the specified position by the given run of light sources.
+	 * <p>
+	 * The run of light sources must be sorted by descending luminance, each light source only lights up within its effective radius.
+	 * The positions are in fixed-point, relative to the same origin.
+	 *
+	 * @param x the X coordinate of the position
+	 * @param y the Y coordinate of the position
+	 * @param z the Z coordinate of the position
+	 * @param sourcesX the X coordinates of the light sources
+	 * @param sourcesY the Y coordinates of the light sources
+	 * @param sourcesZ the Z coordinates of the light sources
+	 * @param luminance the luminances of the light sources
+	 * @param radiiSquared the squared effective radii of the light sources
+	 * @param inverseRadiiSquared the inverses of the squared radii of the light sources
+	 * @param start the index of the first light source of the run, inclusive
+	 * @param end the index of the last light source of the run, exclusive
+	 * @param falloff the falloff of the light
+	 * @param currentLevel the current surrounding dynamic light level, in sixteenths of a light level
+	 * @return the dynamic light level at the specified position, in sixteenths of a light level
+	 * @see FalloffTable
+	 */
+	int maxDynamicLightLevel(
+			int x, int y, int z,
+			int[] sourcesX, int[] sourcesY, int[] sourcesZ, int[] luminance, int[] radiiSquared, long[] inverseRadiiSquared,
+			int start, int end,
+			FalloffTable falloff,
+			int currentLevel
+	);
+
+	/**
+	 * {@return the kernel to use, depending on the {@value #VECTORIZED_PROPERTY} system property and on the availability
+	 * of the Vector API}
+	 */
+	static DynamicLightKernel create() {
+		if (!Boolean.getBoolean(VECTORIZED_PROPERTY)) return SCALAR;
+
+		Logger logger = LoggerFactory.getLogger("LambDynamicLights|DynamicLightKernel");
+
+		if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+			LambDynLights.warn(logger,
+					"The vectorized dynamic lighting kernel requires \"--add-modules jdk.incubator.vector\", using the scalar one instead."
+			);
+			return SCALAR;
+		}
+
+		try {
+			// Loaded reflectively so the Vector API classes are never linked when the module is missing.
+			var kernel = (DynamicLightKernel) Class.forName("dev.lambdaurora.lambdynlights.engine.VectorDynamicLightKernel")
+					.getDeclaredConstructor()
+					.newInstance();
+			LambDynLights.log(logger, "Using the vectorized dynamic lighting kernel.");
+			return kernel;
+		} catch (ReflectiveOperationException | LinkageError e) {
+			LambDynLights.warn(logger, "Failed to load the vectorized dynamic lighting kernel, using the scalar one instead.", e);
+			return SCALAR;
+		}
+	}
+}
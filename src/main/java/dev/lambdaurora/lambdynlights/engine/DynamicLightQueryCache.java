@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2024 LambdAurora <email@lambdaurora.dev>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the Lambda License. For more information,
+ * see the LICENSE file.
+ */
+
+package dev.lambdaurora.lambdynlights.engine;
+
+import it.unimi.dsi.fastutil.HashCommon;
+
+import java.util.Arrays;
+
+/**
+ * Represents a small direct-mapped cache of the last dynamic light levels queried by a thread,
+ * in sixteenths of a light level.
+ * <p>
+ * Each entry remembers the engine generation it was computed for, so the entries of an older generation are never returned.
+ *
+ * @author LambdAurora
+ * @version 3.3.0
+ * @since 3.3.0
+ */
+final class DynamicLightQueryCache {
+	private static final int SIZE = 256;
+	private static final int MASK = SIZE - 1;
+	private static final int NO_GENERATION = -1;
+
+	private final long[] positions = new long[SIZE];
+	private final int[] generations = new int[SIZE];
+	private final int[] levels = new int[SIZE];
+	// Only written by the owning thread, other threads may read slightly outdated values which is fine for statistics.
+	private long hits = 0;
+	private long misses = 0;
+
+	DynamicLightQueryCache() {
+		Arrays.fill(this.generations, NO_GENERATION);
+	}
+
+	/**
+	 * {@return the index of the entry of the given position}
+	 *
+	 * @param position the packed position
+	 */
+	static int index(long position) {
+		return (int) HashCommon.mix(position) & MASK;
+	}
+
+	/**
+	 * {@return {@code true} if the entry at the given index holds the given position for the given engine generation,
+	 * or {@code false} otherwise}
+	 * <p>
+	 * The hit and miss counters are updated accordingly.
+	 *
+	 * @param index the index of the entry
+	 * @param position the packed position
+	 * @param generation the generation of the engine
+	 */
+	boolean contains(int index, long position, int generation) {
+		if (this.generations[index] == generation && this.positions[index] == position) {
+			this.hits++;
+			return true;
+		}
+
+		this.misses++;
+		return false;
+	}
+
+	/**
+	 * {@return the dynamic light level stored in the entry at the given index}
+	 *
+	 * @param index the index of the entry
+	 */
+	int get(int index) {
+		return this.levels[index];
+	}
+
+	/**
+	 * Stores the dynamic light level of the given position in the entry at the given index, replacing its previous content.
+	 *
+	 * @param index the index of the entry
+	 * @param position the packed position
+	 * @param generation the generation of the engine the light level has been computed from
+	 * @param level the dynamic light level
+	 */
+	void put(int index, long position, int generation, int level) {
+		this.positions[index] = position;
+		this.generations[index] = generation;
+		this.levels[index] = level;
+	}
+
+	/**
+	 * {@return the number of queries answered by this cache}
+	 */
+	long getHits() {
+		return this.hits;
+	}
+
+	/**
+	 * {@return the number of queries this cache could not answer}
+	 */
+	long getMisses() {
+		return this.misses;
+	}
+}
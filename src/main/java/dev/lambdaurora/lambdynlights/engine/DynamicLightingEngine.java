@@ -10,67 +10,470 @@
 package dev.lambdaurora.lambdynlights.engine;
 
 import dev.lambdaurora.lambdynlights.DynamicLightSource;
+import dev.lambdaurora.lambdynlights.LambDynLights;
+import it.unimi.dsi.fastutil.Swapper;
+import it.unimi.dsi.fastutil.ints.IntComparator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
 import net.minecraft.core.BlockPos;
-import net.minecraft.core.Vec3i;
 import net.minecraft.util.math.MathHelper;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
-import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
  * Represents the dynamic lighting engine.
+ * <p>
+ * The spatial lookup is stored as a structure of arrays: the light sources data is copied into primitive arrays
+ * in which the light sources of a same cell are chained together, so a query only has to follow primitive indices.
+ * <p>
+ * The spatial lookup is maintained incrementally: light sources additions, changes and removals are queued
+ * then applied as deltas, so its maintenance cost scales with the number of changed light sources.
+ * Once enough changes accumulated, the storage is compacted back so the light sources of each cell are contiguous.
+ * <p>
+ * Queries never read that storage: once the changes are applied, a {@link DynamicLightingSnapshot} of it
+ * is published through a volatile reference. Querying threads never lock, they simply use the latest published snapshot,
+ * which is never modified while published.
+ * <p>
+ * Only the cells of the spatial lookup which changed are captured again for the new snapshot.
+ * The grid spatial indices are double-buffered: the one of the snapshot before the latest is brought up to date
+ * by replacing the light sources of the cells which changed since, so publishing costs as much as the changed cells.
+ * <p>
+ * For chunk meshing, the dynamic light of a whole chunk section is computed at once in a {@link SectionLightVolume},
+ * so the cost of a section is a single pass over the light sources which can reach it.
+ * Other queries go through a small per-thread {@link DynamicLightQueryCache}, as the same positions tend to be queried
+ * repeatedly by neighboring faces.
  *
  * @author LambdAurora, Akarys
- * @version 3.1.0
+ * @version 3.3.0
  * @since 3.1.0
  */
 public final class DynamicLightingEngine {
-	private static final double MAX_RADIUS = 7.75;
-	private static final double MAX_RADIUS_SQUARED = MAX_RADIUS * MAX_RADIUS;
-	private static final int CELL_SIZE = MathHelper.ceil(MAX_RADIUS);
-	public static final int MAX_LIGHT_SOURCES = 1024;
-	private static final Vec3i[] CELL_OFFSETS;
+	// Radii below a block are raised to it.
+	private static final double MIN_RADIUS = 1.0;
+	/**
+	 * The system property to force a type of spatial index instead of letting the engine select one, whose value is {@value}.
+	 * <p>
+	 * The accepted values are {@code uniform_grid}, {@code multi_level_grid} and {@code tree}.
+	 */
+	public static final String SPATIAL_INDEX_PROPERTY = "lambdynlights.engine.spatial_index";
+	private static final Logger LOGGER = LoggerFactory.getLogger("LambDynamicLights|DynamicLightingEngine");
+	// The light sources are gathered by cell, the cells are as large as the fine cells of the grid spatial indices.
+	static final int CELL_SHIFT = 4;
+	// A cell of the spatial lookup holding more light sources than this is crowded enough for the tree spatial index.
+	private static final int DENSE_CELL_POPULATION = 64;
+	// The light sources within a same cube of this many blocks per axis as a power of two are merged, which is a quarter of a block.
+	private static final int CLUSTER_SHIFT = -2;
+	private static final int CLUSTER_RESOLUTION = 1 << -CLUSTER_SHIFT;
+	private static final int CLUSTERS_PER_CELL_SHIFT = CELL_SHIFT - CLUSTER_SHIFT;
+	/**
+	 * The furthest in blocks a light source merged into a cluster lights up from its own position,
+	 * which is the distance between the center of the cluster and its corners.
+	 *
+	 * @see #clusterCenter(double)
+	 */
+	public static final double MAX_CLUSTER_OFFSET = Math.sqrt(3) / (2 * CLUSTER_RESOLUTION);
+	// The cluster size of a light source which emits no visible light, as it is not part of any cluster.
+	private static final int NO_CLUSTER = 0;
+	private static final int MIN_CAPACITY = 64;
+	// Both the end of a cell chain and a missing cell are represented by the same value.
+	private static final int NO_SLOT = CellMap.MISSING;
+
+	// Maps each cell to the first slot of its chain.
+	private final CellMap cells = new CellMap(MIN_CAPACITY);
+	private Storage storage = new Storage(MIN_CAPACITY);
+	// The storage the light sources are moved into when compacting.
+	private Storage spareStorage = new Storage(MIN_CAPACITY);
+	private int sourceCount = 0;
+	// The slots past this index have never been used since the last compaction.
+	private int usedSlots = 0;
+	// The first free slot, the free slots are chained together through the next slots array.
+	private int freeSlot = NO_SLOT;
+	private int changesSinceCompaction = 0;
+	// The light sources captured for the next snapshot, reused between snapshots as the spatial indices copy them.
+	private final CapturedLightSources capturedSources = new CapturedLightSources(MIN_CAPACITY);
+	// The cells whose light sources changed since the last published snapshot, and the ones which changed with it.
+	private LongOpenHashSet dirtyCells = new LongOpenHashSet();
+	private LongOpenHashSet previousDirtyCells = new LongOpenHashSet();
+	// The number of light sources captured from each cell, and the number of cells crowded enough for the tree spatial index.
+	private final CellMap cellPopulations = new CellMap(MIN_CAPACITY);
+	private int denseCells = 0;
+	// The grid spatial index of the last published snapshot, if any.
+	private @Nullable GridSpatialIndex publishedGrid;
+	// The grid spatial index to update for the next snapshot, which is in sync with the snapshot before the last one if synced.
+	private @Nullable GridSpatialIndex spareGrid;
+	private boolean spareGridSynced = false;
+	// Set once every cell has to be captured again.
+	private boolean pendingFullCapture = false;
+	// The slots, cluster keys and squared radii of the light sources of the cell being published, reused between cells.
+	private int[] publishedSlots = new int[MIN_CAPACITY];
+	private int[] publishedClusterKeys = new int[MIN_CAPACITY];
+	private int[] publishedRadiiSquared = new int[MIN_CAPACITY];
+	// The light sources whose light changed since the last update only because the cluster they are merged into changed.
+	private final List<DynamicLightSource> clusterChangedSources = new ArrayList<>();
+	// Incremented every time the spatial lookup changes, to invalidate the data computed from it.
+	private int generation = 0;
+	private FalloffTable falloff = new FalloffTable(FalloffCurve.LINEAR);
+	// The latest published snapshot, the only state querying threads read.
+	private volatile DynamicLightingSnapshot snapshot = DynamicLightingSnapshot.empty(0, this.falloff);
+	private final ThreadLocal<SectionLightVolume> sectionVolumes = ThreadLocal.withInitial(SectionLightVolume::new);
+	// Every query cache ever created, to aggregate their statistics.
+	private final List<DynamicLightQueryCache> queryCaches = new CopyOnWriteArrayList<>();
+	private final ThreadLocal<DynamicLightQueryCache> queryCache = ThreadLocal.withInitial(() -> {
+		var cache = new DynamicLightQueryCache();
+		this.queryCaches.add(cache);
+		return cache;
+	});
+
+	// Light sources bookkeeping, only accessed from the client thread.
+	private final Reference2IntOpenHashMap<DynamicLightSource> sourceSlots = new Reference2IntOpenHashMap<>();
+	private final ReferenceOpenHashSet<DynamicLightSource> pendingUpdates = new ReferenceOpenHashSet<>();
+	private final ReferenceOpenHashSet<DynamicLightSource> pendingRemovals = new ReferenceOpenHashSet<>();
+	private boolean pendingClear = false;
+	private boolean pendingFalloffChange = false;
+	private final @Nullable SpatialIndex.Type forcedSpatialIndexType;
+
+	public DynamicLightingEngine() {
+		this.sourceSlots.defaultReturnValue(NO_SLOT);
+
+		String forcedSpatialIndexType = System.getProperty(SPATIAL_INDEX_PROPERTY);
+		if (forcedSpatialIndexType != null) {
+			this.forcedSpatialIndexType = SpatialIndex.Type.byId(forcedSpatialIndexType).orElse(null);
+
+			if (this.forcedSpatialIndexType == null) {
+				LambDynLights.warn(LOGGER, "Unknown spatial index type \"{}\", selecting it automatically instead.", forcedSpatialIndexType);
+			}
+		} else {
+			this.forcedSpatialIndexType = null;
+		}
+	}
+
+	/**
+	 * {@return the number of light sources the spatial lookup can currently hold without reallocating}
+	 */
+	public int getCapacity() {
+		return this.storage.capacity;
+	}
+
+	/**
+	 * {@return the number of light sources in the spatial lookup}
+	 */
+	public int getLightSourcesCount() {
+		return this.sourceCount;
+	}
+
+	/**
+	 * {@return the number of light sources the current dynamic light queries go through,
+	 * once the light sources emitting no visible light are left out and the co-located ones are merged}
+	 */
+	public int getIndexedLightSourcesCount() {
+		return this.snapshot.size();
+	}
+
+	/**
+	 * {@return the name of the spatial index the current dynamic light queries go through}
+	 */
+	public @NotNull String getSpatialIndexName() {
+		return this.snapshot.indexType().getName();
+	}
+
+	/**
+	 * {@return the curve the dynamic light falls off with}
+	 */
+	public @NotNull FalloffCurve getFalloffCurve() {
+		return this.falloff.curve();
+	}
+
+	/**
+	 * Sets the curve the dynamic light falls off with, the change is applied with the next spatial lookup update.
+	 *
+	 * @param curve the falloff curve
+	 */
+	public void setFalloffCurve(@NotNull FalloffCurve curve) {
+		if (this.falloff.curve() == curve) return;
+
+		this.falloff = new FalloffTable(curve);
+		this.pendingFalloffChange = true;
+	}
+
+	/**
+	 * Returns the effective radius of a light source, which is the distance past which it gives no visible light.
+	 * <p>
+	 * The effective radius grows with the luminance and the radius of the light source, and depends on the falloff curve.
+	 *
+	 * @param luminance the luminance of the light source
+	 * @param radius the radius of the light source
+	 * @return the effective radius in blocks, or {@code -1} if the light source gives no visible light
+	 * @see FalloffTable#effectiveRadiusSquared(int, int)
+	 */
+	public double getEffectiveRadius(int luminance, double radius) {
+		int radiusSquared = this.falloff.effectiveRadiusSquared(MathHelper.clamp(luminance, 0, 15), radiusSquared(radius));
+		if (radiusSquared == FalloffTable.NO_RADIUS) return -1;
+
+		return Math.sqrt(radiusSquared) / (1 << FalloffTable.POSITION_SHIFT);
+	}
+
+	/**
+	 * Computes the footprint of the light a single light source gives to a chunk section and to its one block wide border,
+	 * which are the blocks the mesh of the chunk section samples the light of.
+	 * <p>
+	 * The footprint is a hash of the light levels in sixteenths of a light level, which is the precision of the lightmap,
+	 * so two footprints only differ if the light source would render differently in the chunk section.
+	 *
+	 * @param x the X coordinate of the light source
+	 * @param y the Y coordinate of the light source
+	 * @param z the Z coordinate of the light source
+	 * @param luminance the luminance of the light source
+	 * @param radius the radius of the light source
+	 * @param sectionX the X coordinate of the chunk section
+	 * @param sectionY the Y coordinate of the chunk section
+	 * @param sectionZ the Z coordinate of the chunk section
+	 * @return the footprint of the light source, or {@code 0} if it gives no visible light to the chunk section
+	 */
+	public long computeLightFootprint(
+			double x, double y, double z, int luminance, double radius,
+			int sectionX, int sectionY, int sectionZ
+	) {
+		luminance = MathHelper.clamp(luminance, 0, 15);
+		int radiusSquared = radiusSquared(radius);
+		int effectiveRadiusSquared = this.falloff.effectiveRadiusSquared(luminance, radiusSquared);
+		if (effectiveRadiusSquared == FalloffTable.NO_RADIUS) return 0;
+
+		long inverseRadiusSquared = FalloffTable.inverseRadiusSquared(radiusSquared);
+		int size = SectionLightVolume.SIZE;
+		int minX = (sectionX << 4) - 1;
+		int minY = (sectionY << 4) - 1;
+		int minZ = (sectionZ << 4) - 1;
+		// The light source relative to the first block of the range, in fixed-point.
+		int sourceX = (int) Math.round((x - minX) * (1 << FalloffTable.POSITION_SHIFT));
+		int sourceY = (int) Math.round((y - minY) * (1 << FalloffTable.POSITION_SHIFT));
+		int sourceZ = (int) Math.round((z - minZ) * (1 << FalloffTable.POSITION_SHIFT));
+
+		// Only the blocks within the effective radius can be lit up.
+		double effectiveRadius = Math.sqrt(effectiveRadiusSquared) / (1 << FalloffTable.POSITION_SHIFT);
+		int startX = Math.max(0, MathHelper.floor(x - effectiveRadius) - minX);
+		int startY = Math.max(0, MathHelper.floor(y - effectiveRadius) - minY);
+		int startZ = Math.max(0, MathHelper.floor(z - effectiveRadius) - minZ);
+		int endX = Math.min(size - 1, MathHelper.floor(x + effectiveRadius) - minX);
+		int endY = Math.min(size - 1, MathHelper.floor(y + effectiveRadius) - minY);
+		int endZ = Math.min(size - 1, MathHelper.floor(z + effectiveRadius) - minZ);
+
+		long footprint = 0;
+
+		for (int blockZ = startZ; blockZ <= endZ; blockZ++) {
+			int dz = (blockZ << FalloffTable.POSITION_SHIFT) + FalloffTable.HALF_BLOCK - sourceZ;
+
+			for (int blockY = startY; blockY <= endY; blockY++) {
+				int dy = (blockY << FalloffTable.POSITION_SHIFT) + FalloffTable.HALF_BLOCK - sourceY;
+
+				for (int blockX = startX; blockX <= endX; blockX++) {
+					int dx = (blockX << FalloffTable.POSITION_SHIFT) + FalloffTable.HALF_BLOCK - sourceX;
+					int distanceSquared = dx * dx + dy * dy + dz * dz;
+					if (distanceSquared > effectiveRadiusSquared) continue;
+
+					int level = this.falloff.level(luminance, FalloffTable.relativeDistanceSquared(distanceSquared, inverseRadiusSquared));
+					if (level == 0) continue;
+
+					int index = (blockZ * size + blockY) * size + blockX;
+					footprint = (footprint + ((long) index << 8 | level)) * 0x9e3779b97f4a7c15L;
+				}
+			}
+		}
+
+		return footprint;
+	}
+
+	/**
+	 * {@return the number of dynamic light queries answered by the query caches of all threads}
+	 */
+	public long getQueryCacheHits() {
+		long hits = 0;
+
+		for (var cache : this.queryCaches) {
+			hits += cache.getHits();
+		}
 
-	private final SpatialLookupEntry[] spatialLookupEntries = new SpatialLookupEntry[MAX_LIGHT_SOURCES];
-	private final int[] startIndices = new int[MAX_LIGHT_SOURCES];
+		return hits;
+	}
+
+	/**
+	 * {@return the number of dynamic light queries the query caches of all threads could not answer}
+	 */
+	public long getQueryCacheMisses() {
+		long misses = 0;
+
+		for (var cache : this.queryCaches) {
+			misses += cache.getMisses();
+		}
+
+		return misses;
+	}
 
 	/**
 	 * Returns the dynamic light level at the specified position.
 	 *
 	 * @param pos the position
 	 * @return the dynamic light level at the specified position
+	 * @see #getQuantizedDynamicLightLevel(BlockPos)
 	 */
 	public double getDynamicLightLevel(@NotNull BlockPos pos) {
-		double result = 0;
+		return this.getQuantizedDynamicLightLevel(pos) / 16.0;
+	}
 
-		var currentCell = new BlockPos.Mutable(
-				this.positionToCell(pos.getX()),
-				this.positionToCell(pos.getY()),
-				this.positionToCell(pos.getZ())
-		);
-		var cell = currentCell.immutable();
+	/**
+	 * Returns the dynamic light level at the specified position, in sixteenths of a light level.
+	 * <p>
+	 * The result is cached for the calling thread until the spatial lookup changes.
+	 *
+	 * @param pos the position
+	 * @return the dynamic light level at the specified position, in sixteenths of a light level
+	 */
+	public int getQuantizedDynamicLightLevel(@NotNull BlockPos pos) {
+		var snapshot = this.snapshot;
+		if (snapshot.isEmpty()) return 0;
+
+		long position = pos.asLong();
+		var cache = this.queryCache.get();
+		int index = DynamicLightQueryCache.index(position);
+
+		if (cache.contains(index, position, snapshot.generation())) {
+			return cache.get(index);
+		}
 
-		for (var cellOffset : CELL_OFFSETS) {
-			currentCell.setWithOffset(cell, cellOffset);
+		snapshot = this.acquireSnapshot();
+		try {
+			int result = snapshot.computeDynamicLightLevel(pos.getX(), pos.getY(), pos.getZ());
+			cache.put(index, position, snapshot.generation(), result);
+			return result;
+		} finally {
+			snapshot.release();
+		}
+	}
 
-			int key = this.getHashFromKey(this.hashCell(currentCell.getX(), currentCell.getY(), currentCell.getZ()));
-			int startIndex = this.startIndices[key];
+	/**
+	 * Returns the dynamic light level at the specified position, for chunk meshing.
+	 * <p>
+	 * On the first query of a chunk section, the dynamic light of the whole section and its direct border is computed
+	 * and kept for the calling thread, the next queries within that volume are then simple reads.
+	 * <p>
+	 * The volume is computed again whenever the generation of the published snapshot changes.
+	 * The chunk sections whose light changes with a new snapshot are only rebuilt once it is published,
+	 * so a build which sees a newer snapshot midway is always followed by a build reading it throughout.
+	 *
+	 * @param pos the position
+	 * @return the dynamic light level at the specified position, in sixteenths of a light level
+	 */
+	public int getSectionDynamicLightLevel(@NotNull BlockPos pos) {
+		var snapshot = this.snapshot;
+		if (snapshot.isEmpty()) return 0;
 
-			for (int i = startIndex; i < this.spatialLookupEntries.length; i++) {
-				SpatialLookupEntry entry = this.spatialLookupEntries[i];
-				if (entry == null || entry.cellKey() != key) break;
+		var volume = this.sectionVolumes.get();
+		int x = pos.getX();
+		int y = pos.getY();
+		int z = pos.getZ();
 
-				result = maxDynamicLightLevel(pos, entry.source(), result);
+		if (!volume.contains(x, y, z, snapshot.generation())) {
+			snapshot = this.acquireSnapshot();
+			try {
+				volume.compute(x >> 4, y >> 4, z >> 4, snapshot);
+			} finally {
+				snapshot.release();
 			}
 		}
 
-		return MathHelper.clamp(result, 0, 15);
+		return volume.get(x, y, z);
+	}
+
+	/**
+	 * Computes the dynamic light levels of a whole block range at once.
+	 * <p>
+	 * This is much cheaper than querying each position of the block range,
+	 * as each light source which can reach the block range is only visited once.
+	 * <p>
+	 * The light levels are written in sixteenths of a light level, which is the precision the lightmap coordinates use,
+	 * the level of the position {@code (minX + x, minY + y, minZ + z)} is written at the index
+	 * {@code (z * sizeY + y) * sizeX + x}.
+	 *
+	 * @param minX the minimum X coordinate of the block range
+	 * @param minY the minimum Y coordinate of the block range
+	 * @param minZ the minimum Z coordinate of the block range
+	 * @param sizeX the size of the block range on the X axis
+	 * @param sizeY the size of the block range on the Y axis
+	 * @param sizeZ the size of the block range on the Z axis
+	 * @param levels the array to write the dynamic light levels into, which must be at least {@code sizeX * sizeY * sizeZ} long
+	 * @throws IllegalArgumentException if a size is negative or if the array is too small
+	 */
+	public void getDynamicLightLevels(int minX, int minY, int minZ, int sizeX, int sizeY, int sizeZ, byte @NotNull [] levels) {
+		if (sizeX < 0 || sizeY < 0 || sizeZ < 0) {
+			throw new IllegalArgumentException("Invalid block range size " + sizeX + "x" + sizeY + "x" + sizeZ + ".");
+		}
+
+		int volume = sizeX * sizeY * sizeZ;
+		if (levels.length < volume) {
+			throw new IllegalArgumentException("The light levels array is too small, expected at least " + volume
+					+ " levels but got " + levels.length + ".");
+		}
+
+		Arrays.fill(levels, 0, volume, (byte) 0);
+
+		var snapshot = this.acquireSnapshot();
+		try {
+			snapshot.fillDynamicLightLevels(levels, minX, minY, minZ, sizeX, sizeY, sizeZ);
+		} finally {
+			snapshot.release();
+		}
+	}
+
+	/**
+	 * Acquires the latest published snapshot, which must be released once read.
+	 * <p>
+	 * The spatial index of a superseded snapshot may be updated in place for a later snapshot as soon as no thread reads it,
+	 * so a snapshot is only returned if it is still the latest one once acquired.
+	 *
+	 * @return the latest published snapshot
+	 */
+	private DynamicLightingSnapshot acquireSnapshot() {
+		for (;;) {
+			var snapshot = this.snapshot;
+			snapshot.acquire();
+
+			if (this.snapshot == snapshot) return snapshot;
+
+			snapshot.release();
+		}
+	}
+
+	/**
+	 * Computes the dynamic light levels of a whole chunk section and of its one block wide border at once.
+	 *
+	 * @param sectionX the X coordinate of the chunk section
+	 * @param sectionY the Y coordinate of the chunk section
+	 * @param sectionZ the Z coordinate of the chunk section
+	 * @param levels the array to write the dynamic light levels into, which must be at least {@code 18 * 18 * 18} long
+	 * @throws IllegalArgumentException if the array is too small
+	 * @see #getDynamicLightLevels(int, int, int, int, int, int, byte[])
+	 */
+	public void getSectionDynamicLightLevels(int sectionX, int sectionY, int sectionZ, byte @NotNull [] levels) {
+		this.getDynamicLightLevels(
+				(sectionX << 4) - 1, (sectionY << 4) - 1, (sectionZ << 4) - 1,
+				SectionLightVolume.SIZE, SectionLightVolume.SIZE, SectionLightVolume.SIZE,
+				levels
+		);
 	}
 
 	/**
-	 * Returns the dynamic light level generated by the light source at the specified position.
+	 * Returns the dynamic light level generated by the light source at the specified position,
+	 * with a linear falloff and the default radius.
+	 * <p>
+	 * This reads the light source directly, so it should only be called from the thread which updates the light source.
 	 *
 	 * @param pos the position
 	 * @param lightSource the light source
@@ -78,18 +481,44 @@ public final class DynamicLightingEngine {
 	 * @return the dynamic light level at the specified position
 	 */
 	public static double maxDynamicLightLevel(@NotNull BlockPos pos, @NotNull DynamicLightSource lightSource, double currentLightLevel) {
-		int luminance = lightSource.getLuminance();
+		return maxDynamicLightLevel(pos.getX(), pos.getY(), pos.getZ(),
+				lightSource.getDynamicLightX(), lightSource.getDynamicLightY(), lightSource.getDynamicLightZ(),
+				lightSource.getLuminance(),
+				currentLightLevel
+		);
+	}
+
+	/**
+	 * Returns the dynamic light level generated by a light source at the specified position,
+	 * with a linear falloff and the default radius.
+	 * <p>
+	 * The engine itself computes the dynamic light with integers only, see {@link FalloffTable},
+	 * the results of both stay within a sixteenth of a light level of each other.
+	 *
+	 * @param x the X coordinate of the position
+	 * @param y the Y coordinate of the position
+	 * @param z the Z coordinate of the position
+	 * @param sourceX the X coordinate of the light source
+	 * @param sourceY the Y coordinate of the light source
+	 * @param sourceZ the Z coordinate of the light source
+	 * @param luminance the luminance of the light source
+	 * @param currentLightLevel the current surrounding dynamic light level
+	 * @return the dynamic light level at the specified position
+	 */
+	public static double maxDynamicLightLevel(
+			int x, int y, int z,
+			double sourceX, double sourceY, double sourceZ, int luminance,
+			double currentLightLevel
+	) {
 		if (luminance > 0) {
 			// Can't use Entity#squaredDistanceTo because of eye Y coordinate.
-			double dx = pos.getX() - lightSource.getDynamicLightX() + 0.5;
-			double dy = pos.getY() - lightSource.getDynamicLightY() + 0.5;
-			double dz = pos.getZ() - lightSource.getDynamicLightZ() + 0.5;
+			double dx = x - sourceX + 0.5;
+			double dy = y - sourceY + 0.5;
+			double dz = z - sourceZ + 0.5;
 
 			double distanceSquared = dx * dx + dy * dy + dz * dz;
-			// 7.75 because else we would have to update more chunks and that's not a good idea.
-			// 15 (max range for blocks) would be too much and a bit cheaty.
-			if (distanceSquared <= MAX_RADIUS_SQUARED) {
-				double multiplier = 1.0 - Math.sqrt(distanceSquared) / MAX_RADIUS;
+			if (distanceSquared <= DynamicLightSource.DEFAULT_RADIUS * DynamicLightSource.DEFAULT_RADIUS) {
+				double multiplier = 1.0 - Math.sqrt(distanceSquared) / DynamicLightSource.DEFAULT_RADIUS;
 				double lightLevel = multiplier * (double) luminance;
 				if (lightLevel > currentLightLevel) {
 					return lightLevel;
@@ -99,67 +528,733 @@ public final class DynamicLightingEngine {
 		return currentLightLevel;
 	}
 
-	private int positionToCell(int coord) {
-		return coord / CELL_SIZE;
+	private static int positionToCell(double coord, int cellShift) {
+		// Arithmetic shift floors, so negative coordinates end up in their own cells instead of merging with the origin ones.
+		return MathHelper.floor(coord) >> cellShift;
+	}
+
+	private static long positionToCellKey(double x, double y, double z, int cellShift) {
+		return CellMap.pack(positionToCell(x, cellShift), positionToCell(y, cellShift), positionToCell(z, cellShift));
+	}
+
+	/**
+	 * {@return the key of the cluster of the given position within its cell}
+	 *
+	 * @param x the X coordinate of the position
+	 * @param y the Y coordinate of the position
+	 * @param z the Z coordinate of the position
+	 */
+	private static int positionToClusterKey(double x, double y, double z) {
+		int mask = (1 << CLUSTERS_PER_CELL_SHIFT) - 1;
+		return (MathHelper.floor(x * CLUSTER_RESOLUTION) & mask) << (2 * CLUSTERS_PER_CELL_SHIFT)
+				| (MathHelper.floor(y * CLUSTER_RESOLUTION) & mask) << CLUSTERS_PER_CELL_SHIFT
+				| (MathHelper.floor(z * CLUSTER_RESOLUTION) & mask);
 	}
 
-	private int hashCell(int cellX, int cellY, int cellZ) {
-		return Math.abs(cellX * 751 + cellY * 86399 + cellZ * 284593);
+	/**
+	 * {@return the center of the cluster of the given coordinate on one axis, which a light source merged into it lights up from}
+	 *
+	 * @param coordinate the coordinate
+	 * @see #isClustered(DynamicLightSource)
+	 */
+	public static double clusterCenter(double coordinate) {
+		return (MathHelper.floor(coordinate * CLUSTER_RESOLUTION) + 0.5) / CLUSTER_RESOLUTION;
 	}
 
-	private int getHashFromKey(int hash) {
-		return hash % MAX_LIGHT_SOURCES;
+	/**
+	 * {@return the squared radius in fixed-point of the given radius, clamped to the supported radii}
+	 *
+	 * @param radius the radius in blocks
+	 */
+	private static int radiusSquared(double radius) {
+		int fixedRadius = (int) Math.round(MathHelper.clamp(radius, MIN_RADIUS, DynamicLightSource.MAX_RADIUS) * (1 << FalloffTable.POSITION_SHIFT));
+		return square(fixedRadius);
 	}
 
-	public void computeSpatialLookup(Collection<DynamicLightSource> dynamicLightSources) {
-		Arrays.fill(this.spatialLookupEntries, null);
-		Arrays.fill(this.startIndices, Integer.MAX_VALUE);
+	private static int square(int value) {
+		return value * value;
+	}
 
-		int i = 0;
-		for (var source : dynamicLightSources) {
-			int x = (int) source.getDynamicLightX();
-			int y = (int) source.getDynamicLightY();
-			int z = (int) source.getDynamicLightZ();
+	/**
+	 * Queues the addition of the given light source to the spatial lookup.
+	 *
+	 * @param source the light source to add
+	 */
+	public void addLightSource(@NotNull DynamicLightSource source) {
+		this.updateLightSource(source);
+	}
 
-			int cellKey = this.getHashFromKey(
-					this.hashCell(
-							this.positionToCell(x),
-							this.positionToCell(y),
-							this.positionToCell(z)
-					)
-			);
+	/**
+	 * Queues the update of the given light source in the spatial lookup, to call when its position, luminance or radius changed.
+	 *
+	 * @param source the light source to update
+	 */
+	public void updateLightSource(@NotNull DynamicLightSource source) {
+		this.pendingRemovals.remove(source);
+		this.pendingUpdates.add(source);
+	}
+
+	/**
+	 * Queues the removal of the given light source from the spatial lookup.
+	 *
+	 * @param source the light source to remove
+	 */
+	public void removeLightSource(@NotNull DynamicLightSource source) {
+		this.pendingUpdates.remove(source);
+		this.pendingRemovals.add(source);
+	}
 
-			this.spatialLookupEntries[i] = new SpatialLookupEntry(cellKey, source);
+	/**
+	 * Queues the removal of every light source from the spatial lookup.
+	 */
+	public void clearLightSources() {
+		this.pendingUpdates.clear();
+		this.pendingRemovals.clear();
+		this.pendingClear = true;
+	}
+
+	/**
+	 * {@return {@code true} if some changes are waiting to be applied to the spatial lookup, or {@code false} otherwise}
+	 */
+	public boolean hasPendingChanges() {
+		return this.pendingClear || this.pendingFalloffChange || !this.pendingUpdates.isEmpty() || !this.pendingRemovals.isEmpty();
+	}
 
-			i++;
-			if (i == MAX_LIGHT_SOURCES) break;
+	/**
+	 * Returns whether the current state of the given light source still gives the same light as when it was last applied,
+	 * thanks to it being merged with other co-located light sources.
+	 * <p>
+	 * A light source merged into a cluster lights up from the center of the cluster,
+	 * so as long as it stays within its cluster with the same luminance and radius, its light does not change
+	 * and the chunk sections it lights up don't need to be rebuilt.
+	 * If the cluster itself changes, the light sources left unchanged in it are reported by {@link #drainClusterChangedSources(Consumer)}.
+	 *
+	 * @param source the light source
+	 * @return {@code true} if the light of the light source is unchanged, or {@code false} otherwise
+	 */
+	public boolean isUnchangedWithinCluster(@NotNull DynamicLightSource source) {
+		int slot = this.sourceSlots.getInt(source);
+		if (slot == NO_SLOT || this.storage.clusterSizes[slot] < 2) return false;
+
+		// The light is rendered from the center of the cluster, which only depends on the cluster the position falls in.
+		return clusterCenter(this.storage.x[slot]) == clusterCenter(source.getDynamicLightX())
+				&& clusterCenter(this.storage.y[slot]) == clusterCenter(source.getDynamicLightY())
+				&& clusterCenter(this.storage.z[slot]) == clusterCenter(source.getDynamicLightZ())
+				&& this.storage.luminance[slot] == source.getLuminance()
+				&& this.storage.radius[slot] == source.getDynamicLightRadius();
+	}
+
+	/**
+	 * Returns whether the given light source was merged with co-located light sources by the last spatial lookup update,
+	 * in which case it lights up from the {@linkplain #clusterCenter(double) center of its cluster} instead of its own position.
+	 *
+	 * @param source the light source
+	 * @return {@code true} if the light source is merged into a cluster, or {@code false} otherwise
+	 */
+	public boolean isClustered(@NotNull DynamicLightSource source) {
+		int slot = this.sourceSlots.getInt(source);
+		return slot != NO_SLOT && this.storage.clusterSizes[slot] >= 2;
+	}
+
+	/**
+	 * Drains the light sources whose light changed with the last update only because the cluster they are merged into changed,
+	 * the chunk sections they light up need to be rebuilt.
+	 *
+	 * @param consumer the consumer of the light sources
+	 * @see #isUnchangedWithinCluster(DynamicLightSource)
+	 */
+	public void drainClusterChangedSources(@NotNull Consumer<DynamicLightSource> consumer) {
+		this.clusterChangedSources.forEach(consumer);
+		this.clusterChangedSources.clear();
+	}
+
+	/**
+	 * Applies the queued changes to the spatial lookup, then publishes a new snapshot of it.
+	 * <p>
+	 * Only the changed light sources are read: a light source which stayed in the same cell is updated in place,
+	 * and a light source which crossed a cell boundary is moved to the chain of its new cell.
+	 */
+	public void updateSpatialLookup() {
+		if (!this.hasPendingChanges()) return;
+
+		this.generation++;
+
+		if (this.pendingFalloffChange) {
+			this.pendingFalloffChange = false;
+			// The effective radii depend on the falloff, so every cell has to be captured again into new grids.
+			this.pendingFullCapture = true;
+			this.publishedGrid = this.spareGrid = null;
+			this.spareGridSynced = false;
+		}
+
+		if (this.pendingClear) {
+			this.pendingClear = false;
+			this.sourceSlots.clear();
+			this.cells.clear();
+			this.sourceCount = 0;
+			this.usedSlots = 0;
+			this.freeSlot = NO_SLOT;
+			this.changesSinceCompaction = 0;
+			this.clusterChangedSources.clear();
+			this.dirtyCells.clear();
+			this.previousDirtyCells.clear();
+			this.cellPopulations.clear();
+			this.denseCells = 0;
+			this.invalidateGrids();
+			Arrays.fill(this.storage.sources, null);
+		}
+
+		for (var source : this.pendingRemovals) {
+			int slot = this.sourceSlots.removeInt(source);
+
+			if (slot != NO_SLOT) {
+				this.unlink(slot);
+				this.freeSlot(slot);
+				this.changesSinceCompaction++;
+			}
+		}
+
+		for (var source : this.pendingUpdates) {
+			double x = source.getDynamicLightX();
+			double y = source.getDynamicLightY();
+			double z = source.getDynamicLightZ();
+			long cellKey = positionToCellKey(x, y, z, CELL_SHIFT);
+
+			int slot = this.sourceSlots.getInt(source);
+			if (slot == NO_SLOT) {
+				slot = this.allocateSlot();
+				this.storage.sources[slot] = source;
+				this.sourceSlots.put(source, slot);
+				this.link(slot, cellKey);
+				this.changesSinceCompaction++;
+			} else if (this.storage.cellKeys[slot] != cellKey) {
+				this.unlink(slot);
+				this.link(slot, cellKey);
+				this.changesSinceCompaction++;
+			}
+
+			this.storage.x[slot] = x;
+			this.storage.y[slot] = y;
+			this.storage.z[slot] = z;
+			this.storage.luminance[slot] = source.getLuminance();
+			this.storage.radius[slot] = source.getDynamicLightRadius();
+			this.dirtyCells.add(cellKey);
+		}
+
+		clear(this.pendingRemovals);
+		clear(this.pendingUpdates);
+
+		if (this.changesSinceCompaction > Math.max(this.sourceCount / 4, MIN_CAPACITY / 4)) {
+			this.compact();
+		}
+
+		this.publish();
+	}
+
+	/**
+	 * Publishes a snapshot of the current state of the spatial lookup.
+	 * <p>
+	 * The snapshot is fully built before being published, so querying threads never observe a partially built one.
+	 * It only holds the positions, luminances and radii captured from the light sources when their changes were applied,
+	 * so querying threads never read the light sources themselves while the client thread moves them.
+	 * The light sources which currently emit no visible light are left out.
+	 * <p>
+	 * The captured light sources are indexed with the spatial index which suits their distribution best,
+	 * see {@link #selectSpatialIndexType(CapturedLightSources)}.
+	 * <ul>
+	 *     <li>The grids are double-buffered: the grid of the snapshot before the last one is no longer read by any thread,
+	 *     so it is brought up to date by replacing the light sources of the cells which changed with the last snapshot and since,
+	 *     only those cells are captured again.
+	 *     If a thread still reads it, a new grid is built instead.</li>
+	 *     <li>The tree, and the uniform grid when forced, are built anew from every light source.</li>
+	 * </ul>
+	 */
+	private void publish() {
+		var sources = this.capturedSources;
+		sources.clear();
+		sources.ensureCapacity(this.sourceCount);
+		this.cellPopulations.ensureCapacity(this.storage.capacity);
+
+		// The changed cells are captured first, which keeps the populations of the cells the spatial index is selected from up to date.
+		boolean capturedAll = this.pendingFullCapture;
+		if (capturedAll) {
+			this.pendingFullCapture = false;
+			this.captureAllCells(sources);
+		} else {
+			for (var it = this.dirtyCells.iterator(); it.hasNext(); ) {
+				this.captureCell(sources, it.nextLong());
+			}
+		}
+
+		var forcedType = this.forcedSpatialIndexType;
+		if (forcedType == SpatialIndex.Type.TREE || forcedType == SpatialIndex.Type.UNIFORM_GRID
+				|| (forcedType == null && this.denseCells != 0)) {
+			if (!capturedAll) {
+				this.captureUnchangedCells(sources);
+			}
+
+			var index = this.selectSpatialIndexType(sources).build(sources, this.falloff);
+			this.invalidateGrids();
+			this.publish(new DynamicLightingSnapshot(this.generation, sources.size(), index, index.type()));
+			return;
+		}
+
+		var grid = this.spareGrid;
+		// Replacing the cells one by one only pays off as long as fewer cells changed than there are cells.
+		boolean incremental = this.spareGridSynced && this.dirtyCells.size() + this.previousDirtyCells.size() < this.cells.size();
+		if (incremental && !grid.isInUse()) {
+			// The spare grid only misses the changes of the last snapshot, and the changes since.
+			this.replaceCapturedCells(grid, sources, 0, true);
+
+			for (var it = this.previousDirtyCells.iterator(); it.hasNext(); ) {
+				long cellKey = it.nextLong();
+				if (this.dirtyCells.contains(cellKey)) continue;
+
+				int run = sources.runCount();
+				this.captureCell(sources, cellKey);
+				this.replaceCapturedCells(grid, sources, run, true);
+			}
+		} else {
+			if (grid == null || grid.isInUse()) {
+				grid = GridSpatialIndex.incremental(this.falloff);
+			} else {
+				grid.clear();
+			}
+
+			if (!capturedAll) {
+				this.captureUnchangedCells(sources);
+			}
+
+			this.replaceCapturedCells(grid, sources, 0, false);
+		}
+
+		grid.finishUpdate();
+
+		// The grid of the last snapshot becomes the spare one, which is in sync with it.
+		this.spareGrid = this.publishedGrid;
+		this.spareGridSynced = this.publishedGrid != null;
+		this.publishedGrid = grid;
+		this.publish(new DynamicLightingSnapshot(this.generation, grid.size(), grid, forcedType != null ? forcedType : grid.type()));
+	}
+
+	private void publish(DynamicLightingSnapshot snapshot) {
+		this.snapshot = snapshot;
+
+		// The cells which changed with this snapshot are still missing from the spare grid.
+		var previousDirtyCells = this.previousDirtyCells;
+		clear(previousDirtyCells);
+		this.previousDirtyCells = this.dirtyCells;
+		this.dirtyCells = previousDirtyCells;
+	}
+
+	/**
+	 * Invalidates the grid spatial indices, which have to be built again from every light source the next time a grid is selected.
+	 */
+	private void invalidateGrids() {
+		if (this.publishedGrid != null) {
+			this.spareGrid = this.publishedGrid;
+			this.publishedGrid = null;
+		}
+
+		this.spareGridSynced = false;
+	}
+
+	/**
+	 * Replaces the light sources of the cells recorded by the given captured light sources in the given grid.
+	 *
+	 * @param grid the grid spatial index
+	 * @param sources the captured light sources
+	 * @param firstRun the index of the first recorded cell to replace
+	 * @param replace {@code true} if the grid may hold the previous light sources of the cells, or {@code false} if it is empty
+	 */
+	private void replaceCapturedCells(GridSpatialIndex grid, CapturedLightSources sources, int firstRun, boolean replace) {
+		for (int run = firstRun; run < sources.runCount(); run++) {
+			if (replace) {
+				grid.replaceCell(sources.runCell(run), sources, sources.runStart(run), sources.runEnd(run));
+			} else {
+				grid.addCell(sources.runCell(run), sources, sources.runStart(run), sources.runEnd(run));
+			}
 		}
+	}
 
-		Arrays.sort(this.spatialLookupEntries, Comparator.comparingInt(entry -> entry == null ? Integer.MAX_VALUE : entry.cellKey()));
+	/**
+	 * Captures the light sources of every cell of the spatial lookup.
+	 *
+	 * @param sources the captured light sources
+	 */
+	private void captureAllCells(CapturedLightSources sources) {
+		this.cellPopulations.clear();
+		this.denseCells = 0;
 
-		for (i = 0; i < MAX_LIGHT_SOURCES; i++) {
-			if (this.spatialLookupEntries[i] == null) break;
+		for (int entry = 0; entry < this.cells.tableSize(); entry++) {
+			if (!this.cells.isEmptyAt(entry)) {
+				this.captureCell(sources, this.cells.keyAt(entry), this.cells.valueAt(entry));
+			}
+		}
+	}
 
-			int key = this.spatialLookupEntries[i].cellKey();
-			int previousKey = i == 0 ? Integer.MAX_VALUE : this.spatialLookupEntries[i - 1].cellKey();
+	/**
+	 * Captures the light sources of the cells of the spatial lookup which didn't change since the last snapshot,
+	 * after the changed ones have been captured.
+	 *
+	 * @param sources the captured light sources
+	 */
+	private void captureUnchangedCells(CapturedLightSources sources) {
+		for (int entry = 0; entry < this.cells.tableSize(); entry++) {
+			if (!this.cells.isEmptyAt(entry) && !this.dirtyCells.contains(this.cells.keyAt(entry))) {
+				this.captureCell(sources, this.cells.keyAt(entry), this.cells.valueAt(entry));
+			}
+		}
+	}
+
+	/**
+	 * Captures the light sources of the given cell of the spatial lookup, which may be empty.
+	 *
+	 * @param sources the captured light sources
+	 * @param cellKey the packed key of the cell
+	 */
+	private void captureCell(CapturedLightSources sources, long cellKey) {
+		this.captureCell(sources, cellKey, this.cells.get(cellKey));
+	}
+
+	private void captureCell(CapturedLightSources sources, long cellKey, int head) {
+		var storage = this.storage;
+		int population = 0;
 
-			if (key != previousKey) {
-				this.startIndices[key] = i;
+		for (int slot = head; slot != NO_SLOT; slot = storage.nextSlots[slot]) {
+			if (population == this.publishedSlots.length) {
+				this.publishedSlots = Arrays.copyOf(this.publishedSlots, population * 2);
+				this.publishedClusterKeys = Arrays.copyOf(this.publishedClusterKeys, population * 2);
+				this.publishedRadiiSquared = Arrays.copyOf(this.publishedRadiiSquared, population * 2);
 			}
+
+			this.publishedSlots[population] = slot;
+			this.publishedClusterKeys[population] = positionToClusterKey(storage.x[slot], storage.y[slot], storage.z[slot]);
+			this.publishedRadiiSquared[population] = radiusSquared(storage.radius[slot]);
+			population++;
 		}
+
+		int start = sources.size();
+		this.captureClusters(sources, population);
+		sources.recordCell(cellKey, start);
+		this.setCellPopulation(cellKey, sources.size() - start);
 	}
 
-	static {
-		CELL_OFFSETS = new Vec3i[27];
-		int i = 0;
+	private void setCellPopulation(long cellKey, int population) {
+		int previous = population == 0 ? this.cellPopulations.remove(cellKey) : this.cellPopulations.put(cellKey, population);
 
-		for (int x = -1; x <= 1; x++) {
-			for (int y = -1; y <= 1; y++) {
-				for (int z = -1; z <= 1; z++) {
-					CELL_OFFSETS[i] = new Vec3i(x, y, z);
-					i++;
+		if (previous > DENSE_CELL_POPULATION) this.denseCells--;
+		if (population > DENSE_CELL_POPULATION) this.denseCells++;
+	}
+
+	/**
+	 * Captures the light sources of a cell of the spatial lookup, merging the co-located ones.
+	 * <p>
+	 * The light sources with the same radius within a same quarter of block are merged into a single cluster,
+	 * which lights up from its center with the brightest luminance of its light sources.
+	 * As the brightest light source gives the most light everywhere, the light only moves by a fraction of a block,
+	 * which is below the distance light sources need to move to be updated.
+	 * This way hundreds of item entities or mobs piled up in a farm cost as much as a single light source.
+	 *
+	 * @param sources the captured light sources
+	 * @param population the number of light sources of the cell, gathered in the published slots
+	 */
+	private void captureClusters(CapturedLightSources sources, int population) {
+		var storage = this.storage;
+		int[] slots = this.publishedSlots;
+		int[] clusterKeys = this.publishedClusterKeys;
+		int[] radiiSquared = this.publishedRadiiSquared;
+
+		if (population > 1) {
+			IntComparator byCluster = (a, b) -> clusterKeys[a] != clusterKeys[b]
+					? Integer.compare(clusterKeys[a], clusterKeys[b])
+					: Integer.compare(radiiSquared[a], radiiSquared[b]);
+			Swapper swapper = (a, b) -> {
+				swap(slots, a, b);
+				swap(clusterKeys, a, b);
+				swap(radiiSquared, a, b);
+			};
+			it.unimi.dsi.fastutil.Arrays.quickSort(0, population, byCluster, swapper);
+		}
+
+		int end;
+		for (int start = 0; start < population; start = end) {
+			int radiusSquared = radiiSquared[start];
+			int maxLuminance = 0;
+			int clusterSize = 0;
+			int firstSlot = NO_SLOT;
+
+			for (end = start; end < population && clusterKeys[end] == clusterKeys[start] && radiiSquared[end] == radiusSquared; end++) {
+				int slot = slots[end];
+				int luminance = MathHelper.clamp(storage.luminance[slot], 0, 15);
+				if (this.falloff.effectiveRadiusSquared(luminance, radiusSquared) == FalloffTable.NO_RADIUS) continue;
+
+				maxLuminance = Math.max(maxLuminance, luminance);
+				if (clusterSize++ == 0) firstSlot = slot;
+			}
+
+			for (int i = start; i < end; i++) {
+				int slot = slots[i];
+				int luminance = MathHelper.clamp(storage.luminance[slot], 0, 15);
+				int previousClusterSize = storage.clusterSizes[slot];
+				storage.clusterKeys[slot] = clusterKeys[i];
+
+				if (this.falloff.effectiveRadiusSquared(luminance, radiusSquared) == FalloffTable.NO_RADIUS) {
+					storage.clusterSizes[slot] = NO_CLUSTER;
+					continue;
 				}
+
+				// A light source which joins or leaves a cluster changes the light of the other light sources of the cluster.
+				if (previousClusterSize != clusterSize && Math.max(previousClusterSize, clusterSize) > 1) {
+					this.clusterChangedSources.add(storage.sources[slot]);
+				}
+
+				storage.clusterSizes[slot] = clusterSize;
 			}
+
+			if (clusterSize == 0) continue;
+
+			int effectiveRadiusSquared = this.falloff.effectiveRadiusSquared(maxLuminance, radiusSquared);
+			long inverseRadiusSquared = FalloffTable.inverseRadiusSquared(radiusSquared);
+
+			if (clusterSize == 1) {
+				sources.add(storage.x[firstSlot], storage.y[firstSlot], storage.z[firstSlot],
+						maxLuminance, effectiveRadiusSquared, inverseRadiusSquared
+				);
+			} else {
+				sources.add(
+						clusterCenter(storage.x[firstSlot]), clusterCenter(storage.y[firstSlot]), clusterCenter(storage.z[firstSlot]),
+						maxLuminance, effectiveRadiusSquared, inverseRadiusSquared
+				);
+			}
+		}
+	}
+
+	/**
+	 * Selects the type of spatial index to build for the given light sources,
+	 * unless one is forced with the {@value #SPATIAL_INDEX_PROPERTY} system property.
+	 * <ul>
+	 *     <li>the tree is selected once a cell of the spatial lookup is crowded, as it only looks at the nearest light sources;</li>
+	 *     <li>the multi-level grid is selected if some light sources reach further than half a cell,
+	 *     so the other light sources keep the fine cells;</li>
+	 *     <li>the uniform grid is selected otherwise.</li>
+	 * </ul>
+	 *
+	 * @param sources the captured light sources
+	 * @return the type of spatial index to build
+	 */
+	private SpatialIndex.Type selectSpatialIndexType(CapturedLightSources sources) {
+		if (this.forcedSpatialIndexType != null) {
+			return this.forcedSpatialIndexType;
+		} else if (sources.maxCellPopulation() > DENSE_CELL_POPULATION && TreeSpatialIndex.supports(sources)) {
+			return SpatialIndex.Type.TREE;
+		} else if (sources.maxRadiusSquared() > GridSpatialIndex.FINE_RADIUS_SQUARED) {
+			return SpatialIndex.Type.MULTI_LEVEL_GRID;
+		} else {
+			return SpatialIndex.Type.UNIFORM_GRID;
+		}
+	}
+
+	/**
+	 * Clears the given set, and shrinks its table back once a burst of changes is over,
+	 * as both iterating and clearing a set cost as much as its table.
+	 *
+	 * @param set the set to clear
+	 */
+	private static void clear(ReferenceOpenHashSet<?> set) {
+		int size = set.size();
+		set.clear();
+		set.trim(Math.max(size, MIN_CAPACITY));
+	}
+
+	/**
+	 * Clears the given set, and shrinks its table back once a burst of changes is over,
+	 * as both iterating and clearing a set cost as much as its table.
+	 *
+	 * @param set the set to clear
+	 */
+	private static void clear(LongOpenHashSet set) {
+		int size = set.size();
+		set.clear();
+		set.trim(Math.max(size, MIN_CAPACITY));
+	}
+
+	private static void swap(int[] array, int a, int b) {
+		int value = array[a];
+		array[a] = array[b];
+		array[b] = value;
+	}
+
+	private int allocateSlot() {
+		int slot;
+
+		if (this.freeSlot != NO_SLOT) {
+			slot = this.freeSlot;
+			this.freeSlot = this.storage.nextSlots[slot];
+		} else {
+			if (this.usedSlots == this.storage.capacity) {
+				// The capacity doubles when it is exceeded, the storage is shrunk back when compacting if needed.
+				this.storage = this.storage.copy(this.storage.capacity * 2);
+				this.spareStorage = new Storage(this.storage.capacity);
+				this.cells.ensureCapacity(this.storage.capacity);
+			}
+
+			slot = this.usedSlots++;
+		}
+
+		this.storage.clusterSizes[slot] = NO_CLUSTER;
+		this.sourceCount++;
+		return slot;
+	}
+
+	private void freeSlot(int slot) {
+		this.storage.sources[slot] = null;
+		this.storage.nextSlots[slot] = this.freeSlot;
+		this.freeSlot = slot;
+		this.sourceCount--;
+	}
+
+	private void link(int slot, long cellKey) {
+		var storage = this.storage;
+		int head = this.cells.put(cellKey, slot);
+
+		storage.cellKeys[slot] = cellKey;
+		storage.previousSlots[slot] = NO_SLOT;
+		storage.nextSlots[slot] = head;
+
+		if (head != NO_SLOT) {
+			storage.previousSlots[head] = slot;
+		}
+	}
+
+	private void unlink(int slot) {
+		var storage = this.storage;
+		int previous = storage.previousSlots[slot];
+		int next = storage.nextSlots[slot];
+		this.dirtyCells.add(storage.cellKeys[slot]);
+
+		if (previous == NO_SLOT) {
+			// This is the head of the cell chain.
+			if (next == NO_SLOT) {
+				this.cells.remove(storage.cellKeys[slot]);
+			} else {
+				this.cells.put(storage.cellKeys[slot], next);
+			}
+		} else {
+			storage.nextSlots[previous] = next;
+		}
+
+		if (next != NO_SLOT) {
+			storage.previousSlots[next] = previous;
+		}
+	}
+
+	/**
+	 * Compacts the storage: the light sources are moved so that each cell chain occupies contiguous slots again,
+	 * and the free slots are gathered at the end.
+	 * <p>
+	 * The capacity halves once the light sources count drops below a quarter of it,
+	 * this leaves enough room for the count to fluctuate without reallocating the arrays at every compaction.
+	 */
+	private void compact() {
+		int capacity = this.storage.capacity;
+		while (capacity > MIN_CAPACITY && this.sourceCount < capacity / 4) {
+			capacity /= 2;
+		}
+
+		var source = this.storage;
+		var target = capacity == this.spareStorage.capacity ? this.spareStorage : new Storage(capacity);
+
+		int index = 0;
+		for (int entry = 0; entry < this.cells.tableSize(); entry++) {
+			if (this.cells.isEmptyAt(entry)) continue;
+
+			int start = index;
+			for (int slot = this.cells.valueAt(entry); slot != NO_SLOT; slot = source.nextSlots[slot]) {
+				target.x[index] = source.x[slot];
+				target.y[index] = source.y[slot];
+				target.z[index] = source.z[slot];
+				target.luminance[index] = source.luminance[slot];
+				target.radius[index] = source.radius[slot];
+				target.cellKeys[index] = source.cellKeys[slot];
+				target.clusterKeys[index] = source.clusterKeys[slot];
+				target.clusterSizes[index] = source.clusterSizes[slot];
+				target.sources[index] = source.sources[slot];
+				target.previousSlots[index] = index - 1;
+				target.nextSlots[index] = index + 1;
+				this.sourceSlots.put(target.sources[index], index);
+				index++;
+			}
+
+			target.previousSlots[start] = NO_SLOT;
+			target.nextSlots[index - 1] = NO_SLOT;
+			this.cells.setValueAt(entry, start);
+		}
+
+		Arrays.fill(source.sources, null);
+		this.storage = target;
+		this.spareStorage = source.capacity == capacity ? source : new Storage(capacity);
+		this.cells.ensureCapacity(capacity);
+		this.usedSlots = index;
+		this.freeSlot = NO_SLOT;
+		this.changesSinceCompaction = 0;
+	}
+
+	/**
+	 * Represents the storage of the light sources, as a structure of arrays indexed by slot.
+	 */
+	private static final class Storage {
+		final int capacity;
+		final double[] x;
+		final double[] y;
+		final double[] z;
+		final int[] luminance;
+		final double[] radius;
+		final long[] cellKeys;
+		// The key of the cluster of each light source within its cell, and the number of light sources of that cluster,
+		// as of the last published snapshot.
+		final int[] clusterKeys;
+		final int[] clusterSizes;
+		final int[] nextSlots;
+		final int[] previousSlots;
+		final DynamicLightSource[] sources;
+
+		Storage(int capacity) {
+			this(capacity,
+					new double[capacity], new double[capacity], new double[capacity], new int[capacity], new double[capacity],
+					new long[capacity], new int[capacity], new int[capacity], new int[capacity], new int[capacity],
+					new DynamicLightSource[capacity]
+			);
+		}
+
+		private Storage(
+				int capacity,
+				double[] x, double[] y, double[] z, int[] luminance, double[] radius,
+				long[] cellKeys, int[] clusterKeys, int[] clusterSizes, int[] nextSlots, int[] previousSlots,
+				DynamicLightSource[] sources
+		) {
+			this.capacity = capacity;
+			this.x = x;
+			this.y = y;
+			this.z = z;
+			this.luminance = luminance;
+			this.radius = radius;
+			this.cellKeys = cellKeys;
+			this.clusterKeys = clusterKeys;
+			this.clusterSizes = clusterSizes;
+			this.nextSlots = nextSlots;
+			this.previousSlots = previousSlots;
+			this.sources = sources;
+		}
+
+		Storage copy(int capacity) {
+			return new Storage(capacity,
+					Arrays.copyOf(this.x, capacity), Arrays.copyOf(this.y, capacity), Arrays.copyOf(this.z, capacity),
+					Arrays.copyOf(this.luminance, capacity), Arrays.copyOf(this.radius, capacity), Arrays.copyOf(this.cellKeys, capacity),
+					Arrays.copyOf(this.clusterKeys, capacity), Arrays.copyOf(this.clusterSizes, capacity),
+					Arrays.copyOf(this.nextSlots, capacity), Arrays.copyOf(this.previousSlots, capacity),
+					Arrays.copyOf(this.sources, capacity)
+			);
 		}
 	}
 }
@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2024 LambdAurora <email@lambdaurora.dev>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the Lambda License. For more information,
+ * see the LICENSE file.
+ */
+
+package dev.lambdaurora.lambdynlights.engine;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Represents an immutable snapshot of the spatial lookup of the dynamic lighting engine, which can be queried from any thread.
+ * <p>
+ * The queries are answered by the {@link SpatialIndex} the engine picked for the light sources of this snapshot.
+ * <p>
+ * A snapshot holds no reference to the light sources themselves, only the data captured from them when it was built.
+ * <p>
+ * A snapshot is never modified while published. Once superseded, its spatial index may be updated in place for a later snapshot,
+ * so the threads reading it must {@linkplain #acquire() acquire} it first, see {@link GridSpatialIndex}.
+ *
+ * @author LambdAurora
+ * @version 3.3.0
+ * @since 3.3.0
+ */
+final class DynamicLightingSnapshot {
+	private final int generation;
+	private final int size;
+	private final SpatialIndex index;
+	private final SpatialIndex.Type indexType;
+
+	DynamicLightingSnapshot(int generation, int size, SpatialIndex index, SpatialIndex.Type indexType) {
+		this.generation = generation;
+		this.size = size;
+		this.index = index;
+		this.indexType = indexType;
+	}
+
+	/**
+	 * Creates an empty snapshot.
+	 *
+	 * @param generation the generation of the engine this snapshot is taken from
+	 * @param falloff the falloff of the light
+	 * @return the empty snapshot
+	 */
+	static DynamicLightingSnapshot empty(int generation, FalloffTable falloff) {
+		var index = GridSpatialIndex.uniform(new CapturedLightSources(0), falloff);
+		return new DynamicLightingSnapshot(generation, 0, index, index.type());
+	}
+
+	/**
+	 * {@return the generation of the engine this snapshot has been taken from}
+	 */
+	int generation() {
+		return this.generation;
+	}
+
+	/**
+	 * {@return the number of light sources of this snapshot}
+	 */
+	int size() {
+		return this.size;
+	}
+
+	/**
+	 * {@return {@code true} if this snapshot holds no light source, or {@code false} otherwise}
+	 */
+	boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * {@return the type of the spatial index of this snapshot}
+	 */
+	@NotNull SpatialIndex.Type indexType() {
+		return this.indexType;
+	}
+
+	/**
+	 * Marks the spatial index of this snapshot as read by the calling thread, until {@link #release()} is called.
+	 *
+	 * @see SpatialIndex#acquire()
+	 */
+	void acquire() {
+		this.index.acquire();
+	}
+
+	/**
+	 * Marks the spatial index of this snapshot as no longer read by the calling thread.
+	 *
+	 * @see SpatialIndex#release()
+	 */
+	void release() {
+		this.index.release();
+	}
+
+	/**
+	 * Computes the dynamic light level at the specified position.
+	 *
+	 * @param x the X coordinate of the position
+	 * @param y the Y coordinate of the position
+	 * @param z the Z coordinate of the position
+	 * @return the dynamic light level at the specified position, in sixteenths of a light level
+	 */
+	int computeDynamicLightLevel(int x, int y, int z) {
+		return Math.min(this.index.computeDynamicLightLevel(x, y, z), FalloffTable.MAX_LEVEL);
+	}
+
+	/**
+	 * Computes the dynamic light of the given block range.
+	 *
+	 * @param levels the light levels of the block range to fill, in sixteenths of a light level, which must be zeroed
+	 * @param minX the minimum X coordinate of the block range
+	 * @param minY the minimum Y coordinate of the block range
+	 * @param minZ the minimum Z coordinate of the block range
+	 * @param sizeX the size of the block range on the X axis
+	 * @param sizeY the size of the block range on the Y axis
+	 * @param sizeZ the size of the block range on the Z axis
+	 * @see SpatialIndex#fillDynamicLightLevels(byte[], int, int, int, int, int, int)
+	 */
+	void fillDynamicLightLevels(byte[] levels, int minX, int minY, int minZ, int sizeX, int sizeY, int sizeZ) {
+		if (this.isEmpty()) return;
+
+		this.index.fillDynamicLightLevels(levels, minX, minY, minZ, sizeX, sizeY, sizeZ);
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2024 LambdAurora <email@lambdaurora.dev>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the Lambda License. For more information,
+ * see the LICENSE file.
+ */
+
+package dev.lambdaurora.lambdynlights.engine;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Represents the curves the dynamic light can fall off with as the distance to its source grows.
+ *
+ * @author LambdAurora
+ * @version 3.3.0
+ * @since 3.3.0
+ */
+public enum FalloffCurve {
+	/**
+	 * The light decreases linearly with the distance.
+	 */
+	LINEAR {
+		@Override
+		public double apply(double distance) {
+			return 1.0 - distance;
+		}
+	},
+	/**
+	 * The light decreases quickly close to the source then slowly far from it.
+	 */
+	QUADRATIC {
+		@Override
+		public double apply(double distance) {
+			double remaining = 1.0 - distance;
+			return remaining * remaining;
+		}
+	},
+	/**
+	 * The light decreases slowly close to the source and far from it, and quickly in between.
+	 */
+	SMOOTHSTEP {
+		@Override
+		public double apply(double distance) {
+			return 1.0 - distance * distance * (3.0 - 2.0 * distance);
+		}
+	};
+
+	/**
+	 * Returns the light multiplier at the given distance from the source.
+	 *
+	 * @param distance the distance from the source relative to the light radius, between {@code 0} and {@code 1}
+	 * @return the light multiplier, between {@code 0} and {@code 1}
+	 */
+	public abstract double apply(double distance);
+
+	/**
+	 * Returns the next falloff curve available.
+	 *
+	 * @return the next available falloff curve
+	 */
+	public FalloffCurve next() {
+		FalloffCurve[] v = values();
+		if (v.length == this.ordinal() + 1)
+			return v[0];
+		return v[this.ordinal() + 1];
+	}
+
+	/**
+	 * {@return the name of this falloff curve}
+	 */
+	public @NotNull String getName() {
+		return this.name().toLowerCase();
+	}
+
+	/**
+	 * Gets the falloff curve from its identifier.
+	 *
+	 * @param id the identifier of the falloff curve
+	 * @return the falloff curve if found, else empty
+	 */
+	public static @NotNull Optional<FalloffCurve> byId(@NotNull String id) {
+		return Arrays.stream(values()).filter(curve -> curve.getName().equalsIgnoreCase(id)).findFirst();
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright © 2024 LambdAurora <email@lambdaurora.dev>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the Lambda License. For more information,
+ * see the LICENSE file.
+ */
+
+package dev.lambdaurora.lambdynlights.engine;
+
+/**
+ * Represents a falloff curve precomputed for every squared distance within the light radius,
+ * so a light level can be computed with integer operations only.
+ * <p>
+ * The positions are expressed in fixed-point with {@value #POSITION_SHIFT} fractional bits, a squared distance thus has twice as many.
+ * As each light source has its own radius, the table is indexed by the squared distance relative to the squared radius
+ * of the light source, which is between {@code 0} and {@code 1} with {@value #DISTANCE_SHIFT} fractional bits.
+ * The {@value #TABLE_SHIFT} most significant ones give the table entry, the remaining ones are used
+ * to interpolate between two consecutive entries.
+ * <p>
+ * A light source does not light up further than its effective radius, which is the distance at which its light level
+ * drops below {@value #MIN_VISIBLE_LEVEL} sixteenths of a light level.
+ * The lightmap texture is sampled with its coordinates clamped to the center of its first texel,
+ * so lower light levels look exactly the same as no light at all.
+ *
+ * @author LambdAurora
+ * @version 3.3.0
+ * @since 3.3.0
+ */
+final class FalloffTable {
+	/**
+	 * The number of fractional bits of the fixed-point positions, whose value is {@value}.
+	 */
+	static final int POSITION_SHIFT = 8;
+	/**
+	 * The half of a block in fixed-point, to get the center of a block.
+	 */
+	static final int HALF_BLOCK = 1 << (POSITION_SHIFT - 1);
+	/**
+	 * The number of fractional bits of the relative squared distances, whose value is {@value}.
+	 */
+	static final int DISTANCE_SHIFT = 22;
+	/**
+	 * The maximum light level in sixteenths of a light level, whose value is {@value}.
+	 */
+	static final int MAX_LEVEL = 15 << 4;
+	/**
+	 * The minimum visible light level in sixteenths of a light level, whose value is {@value}.
+	 */
+	static final int MIN_VISIBLE_LEVEL = 1 << 3;
+	/**
+	 * The squared effective radius of a light source which never lights anything up.
+	 */
+	static final int NO_RADIUS = -1;
+	private static final int TABLE_SHIFT = 14;
+	private static final int INTERPOLATION_SHIFT = DISTANCE_SHIFT - TABLE_SHIFT;
+	// The inverse of a squared radius has this many fractional bits, so the product with a squared distance fits in a long.
+	private static final int INVERSE_SHIFT = 32 + DISTANCE_SHIFT;
+	// The multipliers have 12 fractional bits, the luminance has to be multiplied by 16 to get sixteenths of a light level.
+	private static final int MULTIPLIER_SHIFT = 12;
+	private static final int LEVEL_SHIFT = MULTIPLIER_SHIFT - 4;
+
+	private final FalloffCurve curve;
+	private final int[] multipliers;
+	// The relative squared effective radius for each luminance.
+	private final int[] radiiSquared = new int[16];
+
+	FalloffTable(FalloffCurve curve) {
+		this.curve = curve;
+		// One more entry past the radius, so the interpolation never reads out of bounds.
+		this.multipliers = new int[(1 << TABLE_SHIFT) + 2];
+
+		double scale = 1 << TABLE_SHIFT;
+		for (int i = 0; i < this.multipliers.length; i++) {
+			double distance = Math.min(Math.sqrt(i / scale), 1.0);
+			this.multipliers[i] = (int) Math.round(curve.apply(distance) * (1 << MULTIPLIER_SHIFT));
+		}
+
+		for (int luminance = 0; luminance < this.radiiSquared.length; luminance++) {
+			this.radiiSquared[luminance] = this.findRadiusSquared(luminance);
+		}
+	}
+
+	/**
+	 * Finds the largest relative squared distance at which the given luminance still gives a visible light level.
+	 * <p>
+	 * The light level never increases with the distance, so it can be found with a binary search.
+	 *
+	 * @param luminance the luminance
+	 * @return the relative squared effective radius, or {@link #NO_RADIUS} if the luminance never gives a visible light level
+	 */
+	private int findRadiusSquared(int luminance) {
+		if (this.level(luminance, 0) < MIN_VISIBLE_LEVEL) return NO_RADIUS;
+
+		int low = 0;
+		int high = 1 << DISTANCE_SHIFT;
+
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+
+			if (this.level(luminance, middle) >= MIN_VISIBLE_LEVEL) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+
+		return low;
+	}
+
+	/**
+	 * {@return the falloff curve of this table}
+	 */
+	FalloffCurve curve() {
+		return this.curve;
+	}
+
+	/**
+	 * Returns the squared effective radius of a light source, past which it gives no visible light.
+	 *
+	 * @param luminance the luminance of the light source, between {@code 0} and {@code 15}
+	 * @param radiusSquared the squared radius of the light source in fixed-point
+	 * @return the squared effective radius in fixed-point, or {@link #NO_RADIUS} if the light source gives no visible light
+	 */
+	int effectiveRadiusSquared(int luminance, int radiusSquared) {
+		int relative = this.radiiSquared[luminance];
+		if (relative == NO_RADIUS) return NO_RADIUS;
+
+		return (int) (((long) relative * radiusSquared) >>> DISTANCE_SHIFT);
+	}
+
+	/**
+	 * {@return the inverse of the given squared radius, to compute relative squared distances with}
+	 *
+	 * @param radiusSquared the squared radius in fixed-point
+	 * @see #relativeDistanceSquared(int, long)
+	 */
+	static long inverseRadiusSquared(int radiusSquared) {
+		return (1L << INVERSE_SHIFT) / radiusSquared;
+	}
+
+	/**
+	 * Returns the squared distance relative to the squared radius of a light source.
+	 *
+	 * @param distanceSquared the squared distance in fixed-point, which must be within the squared radius
+	 * @param inverseRadiusSquared the inverse of the squared radius of the light source
+	 * @return the relative squared distance
+	 * @see #inverseRadiusSquared(int)
+	 */
+	static int relativeDistanceSquared(int distanceSquared, long inverseRadiusSquared) {
+		return (int) ((distanceSquared * inverseRadiusSquared) >>> 32);
+	}
+
+	/**
+	 * Returns the light level a light source gives at the given relative squared distance.
+	 *
+	 * @param luminance the luminance of the light source
+	 * @param relativeDistanceSquared the squared distance relative to the squared radius of the light source
+	 * @return the light level in sixteenths of a light level
+	 * @see #relativeDistanceSquared(int, long)
+	 */
+	int level(int luminance, int relativeDistanceSquared) {
+		int index = relativeDistanceSquared >>> INTERPOLATION_SHIFT;
+		int fraction = relativeDistanceSquared & ((1 << INTERPOLATION_SHIFT) - 1);
+		int low = this.multipliers[index];
+		int multiplier = low + (((this.multipliers[index + 1] - low) * fraction) >> INTERPOLATION_SHIFT);
+		return (luminance * multiplier) >> LEVEL_SHIFT;
+	}
+}
@@ -0,0 +1,654 @@
+/*
+ * Copyright © 2024 LambdAurora <email@lambdaurora.dev>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the Lambda License. For more information,
+ * see the LICENSE file.
+ */
+
+package dev.lambdaurora.lambdynlights.engine;
+
+import it.unimi.dsi.fastutil.Swapper;
+import it.unimi.dsi.fastutil.ints.IntComparator;
+import net.minecraft.util.math.MathHelper;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Represents a spatial index made of one or several grids of cells, see {@link Grid}.
+ * <p>
+ * Each light source goes into the finest grid whose cells are large enough for its effective radius,
+ * so the few light sources reaching further don't make every query pay for their radius.
+ * <p>
+ * The positions of the light sources are stored relative to the origin of their cell in fixed-point,
+ * as described in {@link FalloffTable}, so the whole light computation is done with integers.
+ * <p>
+ * Each light source remembers the cell of the spatial lookup of the engine it was captured from,
+ * so the engine can {@linkplain #replaceCell(long, CapturedLightSources, int, int) replace} the light sources of the cells
+ * which changed instead of building a whole new spatial index.
+ * Such a spatial index is only updated once no snapshot using it is published anymore and no thread reads it,
+ * see {@link #isInUse()}.
+ *
+ * @author LambdAurora
+ * @version 3.3.0
+ * @since 3.3.0
+ */
+final class GridSpatialIndex implements SpatialIndex {
+	/**
+	 * The size of the cells of the fine grid as a power of two, which is the cell size of the spatial lookup of the engine.
+	 */
+	static final int FINE_CELL_SHIFT = DynamicLightingEngine.CELL_SHIFT;
+	/**
+	 * The size of the cells of the coarse grid as a power of two, large enough for the maximum radius.
+	 */
+	static final int COARSE_CELL_SHIFT = 5;
+	/**
+	 * The largest squared effective radius the fine grid can hold, in fixed-point.
+	 */
+	static final int FINE_RADIUS_SQUARED = maxRadiusSquared(FINE_CELL_SHIFT);
+
+	private final FalloffTable falloff;
+	private final Grid[] grids;
+	// The number of threads currently reading this spatial index.
+	private final AtomicInteger readers = new AtomicInteger();
+	private int size = 0;
+
+	private GridSpatialIndex(FalloffTable falloff, int... cellShifts) {
+		this.falloff = falloff;
+		this.grids = new Grid[cellShifts.length];
+
+		for (int level = 0; level < cellShifts.length; level++) {
+			this.grids[level] = new Grid(cellShifts[level]);
+		}
+	}
+
+	private static GridSpatialIndex build(CapturedLightSources sources, FalloffTable falloff, int... cellShifts) {
+		var index = new GridSpatialIndex(falloff, cellShifts);
+
+		for (int i = 0; i < sources.size(); i++) {
+			long origin = CellMap.pack(
+					positionToCell(sources.x[i], FINE_CELL_SHIFT),
+					positionToCell(sources.y[i], FINE_CELL_SHIFT),
+					positionToCell(sources.z[i], FINE_CELL_SHIFT)
+			);
+			index.add(sources, i, origin);
+		}
+
+		index.finishUpdate();
+		return index;
+	}
+
+	/**
+	 * Builds a spatial index made of a single grid, whose cells are large enough for the largest effective radius.
+	 *
+	 * @param sources the captured light sources
+	 * @param falloff the falloff of the light
+	 * @return the spatial index
+	 */
+	static @NotNull GridSpatialIndex uniform(@NotNull CapturedLightSources sources, @NotNull FalloffTable falloff) {
+		int cellShift = sources.maxRadiusSquared() > FINE_RADIUS_SQUARED ? COARSE_CELL_SHIFT : FINE_CELL_SHIFT;
+		return build(sources, falloff, cellShift);
+	}
+
+	/**
+	 * Builds a spatial index made of a fine grid, and of a coarse grid for the light sources reaching further.
+	 *
+	 * @param sources the captured light sources
+	 * @param falloff the falloff of the light
+	 * @return the spatial index
+	 */
+	static @NotNull GridSpatialIndex multiLevel(@NotNull CapturedLightSources sources, @NotNull FalloffTable falloff) {
+		return build(sources, falloff, FINE_CELL_SHIFT, COARSE_CELL_SHIFT);
+	}
+
+	/**
+	 * Creates an empty spatial index made of a fine grid and of a coarse grid, to fill with {@link #replaceCell(long, CapturedLightSources, int, int)}.
+	 *
+	 * @param falloff the falloff of the light
+	 * @return the spatial index
+	 */
+	static @NotNull GridSpatialIndex incremental(@NotNull FalloffTable falloff) {
+		return new GridSpatialIndex(falloff, FINE_CELL_SHIFT, COARSE_CELL_SHIFT);
+	}
+
+	/**
+	 * Replaces the light sources captured from the given cell of the spatial lookup of the engine.
+	 * <p>
+	 * The changes only take effect once {@link #finishUpdate()} is called,
+	 * which must not happen while the spatial index {@linkplain #isInUse() is in use}.
+	 *
+	 * @param cellKey the packed key of the cell of the spatial lookup of the engine
+	 * @param sources the captured light sources
+	 * @param start the index of the first light source captured from the cell, inclusive
+	 * @param end the index of the last light source captured from the cell, exclusive
+	 */
+	void replaceCell(long cellKey, @NotNull CapturedLightSources sources, int start, int end) {
+		int cellX = CellMap.unpackX(cellKey);
+		int cellY = CellMap.unpackY(cellKey);
+		int cellZ = CellMap.unpackZ(cellKey);
+
+		// The light sources of a cell of the engine can only be in the cell of each grid which holds it.
+		for (var grid : this.grids) {
+			int shift = grid.cellShift - FINE_CELL_SHIFT;
+			int index = grid.indices.get(CellMap.pack(cellX >> shift, cellY >> shift, cellZ >> shift));
+			if (index == CellMap.MISSING) continue;
+
+			int removed = grid.cells[index].removeOrigin(cellKey);
+			if (removed != 0) {
+				this.size -= removed;
+				grid.markModified(index);
+			}
+		}
+
+		this.addCell(cellKey, sources, start, end);
+	}
+
+	/**
+	 * Adds the light sources captured from the given cell of the spatial lookup of the engine, which this spatial index doesn't hold yet.
+	 *
+	 * @param cellKey the packed key of the cell of the spatial lookup of the engine
+	 * @param sources the captured light sources
+	 * @param start the index of the first light source captured from the cell, inclusive
+	 * @param end the index of the last light source captured from the cell, exclusive
+	 * @see #replaceCell(long, CapturedLightSources, int, int)
+	 */
+	void addCell(long cellKey, @NotNull CapturedLightSources sources, int start, int end) {
+		for (int i = start; i < end; i++) {
+			this.add(sources, i, cellKey);
+		}
+	}
+
+	private void add(CapturedLightSources sources, int i, long origin) {
+		var grid = this.grids[this.level(sources.radiiSquared[i])];
+		int cellShift = grid.cellShift;
+		long key = CellMap.pack(
+				positionToCell(sources.x[i], cellShift), positionToCell(sources.y[i], cellShift), positionToCell(sources.z[i], cellShift)
+		);
+		int index = grid.indices.get(key);
+
+		if (index == CellMap.MISSING) {
+			index = grid.addCell(key);
+		}
+
+		grid.cells[index].add(
+				positionInCell(sources.x[i], cellShift), positionInCell(sources.y[i], cellShift), positionInCell(sources.z[i], cellShift),
+				sources.luminance[i], sources.radiiSquared[i], sources.inverseRadiiSquared[i],
+				origin
+		);
+		grid.markModified(index);
+		this.size++;
+	}
+
+	/**
+	 * Applies the replaced light sources: the modified cells are sorted and their bounds computed again, the emptied ones are removed.
+	 */
+	void finishUpdate() {
+		for (var grid : this.grids) {
+			grid.finishUpdate();
+		}
+	}
+
+	/**
+	 * Removes every light source, the cells are kept to be reused.
+	 */
+	void clear() {
+		for (var grid : this.grids) {
+			grid.clear();
+		}
+
+		this.size = 0;
+	}
+
+	/**
+	 * {@return the number of light sources of this spatial index}
+	 */
+	int size() {
+		return this.size;
+	}
+
+	@Override
+	public void acquire() {
+		this.readers.incrementAndGet();
+	}
+
+	@Override
+	public void release() {
+		this.readers.decrementAndGet();
+	}
+
+	/**
+	 * {@return {@code true} if a thread is reading this spatial index, or {@code false} otherwise}
+	 */
+	boolean isInUse() {
+		return this.readers.get() != 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * A spatial index whose coarse grid is empty is a uniform grid.
+	 */
+	@Override
+	public @NotNull Type type() {
+		for (int level = 1; level < this.grids.length; level++) {
+			if (!this.grids[level].isEmpty()) return Type.MULTI_LEVEL_GRID;
+		}
+
+		return Type.UNIFORM_GRID;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The cells whose brightest light source could not exceed the current result even at their closest point are skipped,
+	 * and the query stops once the maximum light level is reached.
+	 */
+	@Override
+	public int computeDynamicLightLevel(int x, int y, int z) {
+		int result = 0;
+
+		for (var grid : this.grids) {
+			// The empty grids are skipped so the queries don't probe them.
+			if (!grid.isEmpty()) {
+				result = this.computeDynamicLightLevel(grid, x, y, z, result);
+			}
+		}
+
+		return result;
+	}
+
+	private int computeDynamicLightLevel(Grid grid, int x, int y, int z, int result) {
+		int cellX = x >> grid.cellShift;
+		int cellY = y >> grid.cellShift;
+		int cellZ = z >> grid.cellShift;
+		// The neighbor cells to look into depend on which half of the cell the position is in.
+		int cellMask = (1 << grid.cellShift) - 1;
+		int halfCellSize = 1 << (grid.cellShift - 1);
+		int neighborX = (x & cellMask) < halfCellSize ? -1 : 1;
+		int neighborY = (y & cellMask) < halfCellSize ? -1 : 1;
+		int neighborZ = (z & cellMask) < halfCellSize ? -1 : 1;
+
+		// The own cell of the position comes first as it is the most likely to hold the brightest light.
+		for (int octant = 0; octant < 8 && result < FalloffTable.MAX_LEVEL; octant++) {
+			int currentCellX = cellX + ((octant & 1) != 0 ? neighborX : 0);
+			int currentCellY = cellY + ((octant & 2) != 0 ? neighborY : 0);
+			int currentCellZ = cellZ + ((octant & 4) != 0 ? neighborZ : 0);
+			int index = grid.indices.get(CellMap.pack(currentCellX, currentCellY, currentCellZ));
+			if (index == CellMap.MISSING) continue;
+
+			var cell = grid.cells[index];
+			int maxLuminance = cell.luminance[0];
+			if (maxLuminance << 4 <= result) continue;
+
+			// The center of the block, relative to the origin of the cell.
+			int relativeX = grid.blockCenterInCell(x, currentCellX);
+			int relativeY = grid.blockCenterInCell(y, currentCellY);
+			int relativeZ = grid.blockCenterInCell(z, currentCellZ);
+
+			// A light source in this cell can only exceed the current result if its closest point is bright enough,
+			// no light source of the cell is brighter or reaches further than its brightest luminance and its largest radius.
+			int distanceSquared = grid.distanceSquaredToCell(relativeX)
+					+ grid.distanceSquaredToCell(relativeY)
+					+ grid.distanceSquaredToCell(relativeZ);
+			if (distanceSquared > cell.maxRadiusSquared) continue;
+
+			int relativeDistanceSquared = FalloffTable.relativeDistanceSquared(distanceSquared, cell.minInverseRadiusSquared);
+			if (this.falloff.level(maxLuminance, relativeDistanceSquared) <= result) continue;
+
+			result = KERNEL.maxDynamicLightLevel(relativeX, relativeY, relativeZ,
+					cell.x, cell.y, cell.z, cell.luminance, cell.radiiSquared, cell.inverseRadiiSquared,
+					0, cell.size,
+					this.falloff,
+					result
+			);
+		}
+
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The light is computed light source by light source: only the cells which may hold light sources reaching
+	 * the block range are visited, and each light source only visits the blocks within its effective radius.
+	 *
+	 * @see SectionLightVolume#addLightSource(byte[], int, int, int, int, int, int, int, int, long, FalloffTable)
+	 */
+	@Override
+	public void fillDynamicLightLevels(byte[] levels, int minX, int minY, int minZ, int sizeX, int sizeY, int sizeZ) {
+		for (var grid : this.grids) {
+			if (!grid.isEmpty()) {
+				this.fillDynamicLightLevels(grid, levels, minX, minY, minZ, sizeX, sizeY, sizeZ);
+			}
+		}
+	}
+
+	private void fillDynamicLightLevels(Grid grid, byte[] levels, int minX, int minY, int minZ, int sizeX, int sizeY, int sizeZ) {
+		// The light sources which can reach the block range are at most half a cell away from its blocks.
+		int radius = 1 << (grid.cellShift - 1);
+		int startCellX = (minX - radius) >> grid.cellShift;
+		int startCellY = (minY - radius) >> grid.cellShift;
+		int startCellZ = (minZ - radius) >> grid.cellShift;
+		int endCellX = (minX + sizeX + radius) >> grid.cellShift;
+		int endCellY = (minY + sizeY + radius) >> grid.cellShift;
+		int endCellZ = (minZ + sizeZ + radius) >> grid.cellShift;
+
+		for (int cellZ = startCellZ; cellZ <= endCellZ; cellZ++) {
+			for (int cellY = startCellY; cellY <= endCellY; cellY++) {
+				for (int cellX = startCellX; cellX <= endCellX; cellX++) {
+					int index = grid.indices.get(CellMap.pack(cellX, cellY, cellZ));
+					if (index == CellMap.MISSING) continue;
+
+					var cell = grid.cells[index];
+					// The origin of the cell relative to the origin of the block range, in fixed-point.
+					int originX = ((cellX << grid.cellShift) - minX) << FalloffTable.POSITION_SHIFT;
+					int originY = ((cellY << grid.cellShift) - minY) << FalloffTable.POSITION_SHIFT;
+					int originZ = ((cellZ << grid.cellShift) - minZ) << FalloffTable.POSITION_SHIFT;
+
+					for (int i = 0; i < cell.size; i++) {
+						SectionLightVolume.addLightSource(levels, sizeX, sizeY, sizeZ,
+								originX + cell.x[i], originY + cell.y[i], originZ + cell.z[i],
+								cell.luminance[i], cell.radiiSquared[i], cell.inverseRadiiSquared[i],
+								this.falloff
+						);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * {@return the largest squared effective radius in fixed-point the cells of the given size can hold}
+	 *
+	 * @param cellShift the size of the cells, as a power of two
+	 */
+	private static int maxRadiusSquared(int cellShift) {
+		int radius = (1 << (cellShift - 1)) << FalloffTable.POSITION_SHIFT;
+		return radius * radius;
+	}
+
+	/**
+	 * {@return the index of the finest grid which can hold a light source of the given squared effective radius}
+	 *
+	 * @param radiusSquared the squared effective radius in fixed-point
+	 */
+	private int level(int radiusSquared) {
+		int level = 0;
+
+		while (level < this.grids.length - 1 && radiusSquared > maxRadiusSquared(this.grids[level].cellShift)) {
+			level++;
+		}
+
+		return level;
+	}
+
+	private static int positionToCell(double coordinate, int cellShift) {
+		// Arithmetic shift floors, so negative coordinates end up in their own cells instead of merging with the origin ones.
+		return MathHelper.floor(coordinate) >> cellShift;
+	}
+
+	/**
+	 * {@return the given coordinate relative to the origin of its cell, in fixed-point}
+	 *
+	 * @param coordinate the coordinate
+	 * @param cellShift the size of the cells, as a power of two
+	 * @see FalloffTable
+	 */
+	private static int positionInCell(double coordinate, int cellShift) {
+		int cellOrigin = positionToCell(coordinate, cellShift) << cellShift;
+		return (int) Math.round((coordinate - cellOrigin) * (1 << FalloffTable.POSITION_SHIFT));
+	}
+
+	private static void swap(int[] array, int a, int b) {
+		int value = array[a];
+		array[a] = array[b];
+		array[b] = value;
+	}
+
+	private static void swap(long[] array, int a, int b) {
+		long value = array[a];
+		array[a] = array[b];
+		array[b] = value;
+	}
+
+	/**
+	 * Represents a grid of cells over some of the light sources of the spatial index.
+	 * <p>
+	 * The cells need to be at least twice as large as the effective radius of the light sources they hold,
+	 * this way a query only needs to look into its own cell and the 7 neighbors on the side of the octant it is in.
+	 * <p>
+	 * The cell map associates each cell to its index in the cells array.
+	 * The emptied cells are kept in that array to be reused by the next cells, so updating the grid doesn't allocate.
+	 */
+	private static final class Grid {
+		final int cellShift;
+		final CellMap indices = new CellMap(16);
+		// The number of cells the cell map can hold, which only grows so the emptied and refilled cells don't make it reallocate.
+		private int indicesCapacity = 16;
+		Cell[] cells = new Cell[16];
+		// The number of indices of the cells array ever used, and the ones freed since.
+		private int usedIndices = 0;
+		private int[] freeIndices = new int[16];
+		private int freeCount = 0;
+		// The indices of the cells modified since the last update.
+		private int[] modifiedIndices = new int[16];
+		private int modifiedCount = 0;
+
+		Grid(int cellShift) {
+			this.cellShift = cellShift;
+		}
+
+		boolean isEmpty() {
+			return this.indices.size() == 0;
+		}
+
+		int addCell(long key) {
+			int index;
+
+			if (this.freeCount != 0) {
+				index = this.freeIndices[--this.freeCount];
+			} else {
+				index = this.usedIndices++;
+
+				if (index == this.cells.length) {
+					this.cells = Arrays.copyOf(this.cells, index * 2);
+				}
+
+				if (this.cells[index] == null) {
+					this.cells[index] = new Cell();
+				}
+			}
+
+			this.cells[index].key = key;
+			if (this.indices.size() == this.indicesCapacity) {
+				this.indicesCapacity *= 2;
+				this.indices.ensureCapacity(this.indicesCapacity);
+			}
+			this.indices.put(key, index);
+			return index;
+		}
+
+		void markModified(int index) {
+			var cell = this.cells[index];
+			if (cell.modified) return;
+
+			cell.modified = true;
+			if (this.modifiedCount == this.modifiedIndices.length) {
+				this.modifiedIndices = Arrays.copyOf(this.modifiedIndices, this.modifiedCount * 2);
+			}
+			this.modifiedIndices[this.modifiedCount++] = index;
+		}
+
+		void finishUpdate() {
+			for (int i = 0; i < this.modifiedCount; i++) {
+				int index = this.modifiedIndices[i];
+				var cell = this.cells[index];
+				cell.modified = false;
+
+				if (cell.size == 0) {
+					this.indices.remove(cell.key);
+
+					if (this.freeCount == this.freeIndices.length) {
+						this.freeIndices = Arrays.copyOf(this.freeIndices, this.freeCount * 2);
+					}
+					this.freeIndices[this.freeCount++] = index;
+				} else {
+					cell.computeBounds();
+				}
+			}
+
+			this.modifiedCount = 0;
+		}
+
+		void clear() {
+			for (int index = 0; index < this.usedIndices; index++) {
+				this.cells[index].size = 0;
+				this.cells[index].modified = false;
+			}
+
+			this.indices.clear();
+			this.usedIndices = 0;
+			this.freeCount = 0;
+			this.modifiedCount = 0;
+		}
+
+		/**
+		 * {@return the center of the given block on one axis, relative to the origin of the given cell in fixed-point}
+		 *
+		 * @param coordinate the coordinate of the block
+		 * @param cell the coordinate of the cell
+		 */
+		int blockCenterInCell(int coordinate, int cell) {
+			return ((coordinate - (cell << this.cellShift)) << FalloffTable.POSITION_SHIFT) + FalloffTable.HALF_BLOCK;
+		}
+
+		/**
+		 * {@return the squared distance on one axis between the given point and the cell it is relative to, in fixed-point}
+		 *
+		 * @param relative the coordinate of the point relative to the origin of the cell
+		 */
+		int distanceSquaredToCell(int relative) {
+			int distance = Math.max(0, Math.max(-relative, relative - (1 << (this.cellShift + FalloffTable.POSITION_SHIFT))));
+			return distance * distance;
+		}
+	}
+
+	/**
+	 * Represents the light sources of a cell, stored contiguously as a structure of arrays.
+	 * <p>
+	 * The light sources are sorted by descending luminance, so the first one gives the maximum luminance of the cell.
+	 */
+	private static final class Cell implements IntComparator, Swapper {
+		long key;
+		int size = 0;
+		int[] x = new int[4];
+		int[] y = new int[4];
+		int[] z = new int[4];
+		int[] luminance = new int[4];
+		int[] radiiSquared = new int[4];
+		long[] inverseRadiiSquared = new long[4];
+		// The cell of the spatial lookup of the engine each light source was captured from.
+		long[] origins = new long[4];
+		// The largest squared effective radius of the light sources, and the inverse of their largest squared radius.
+		int maxRadiusSquared;
+		long minInverseRadiusSquared;
+		boolean modified = false;
+
+		void add(int x, int y, int z, int luminance, int radiusSquared, long inverseRadiusSquared, long origin) {
+			if (this.size == this.x.length) {
+				int capacity = this.size * 2;
+				this.x = Arrays.copyOf(this.x, capacity);
+				this.y = Arrays.copyOf(this.y, capacity);
+				this.z = Arrays.copyOf(this.z, capacity);
+				this.luminance = Arrays.copyOf(this.luminance, capacity);
+				this.radiiSquared = Arrays.copyOf(this.radiiSquared, capacity);
+				this.inverseRadiiSquared = Arrays.copyOf(this.inverseRadiiSquared, capacity);
+				this.origins = Arrays.copyOf(this.origins, capacity);
+			}
+
+			int index = this.size++;
+			this.x[index] = x;
+			this.y[index] = y;
+			this.z[index] = z;
+			this.luminance[index] = luminance;
+			this.radiiSquared[index] = radiusSquared;
+			this.inverseRadiiSquared[index] = inverseRadiusSquared;
+			this.origins[index] = origin;
+		}
+
+		/**
+		 * Removes the light sources captured from the given cell of the spatial lookup of the engine, keeping the order of the others.
+		 *
+		 * @param origin the packed key of the cell of the spatial lookup of the engine
+		 * @return the number of removed light sources
+		 */
+		int removeOrigin(long origin) {
+			int kept = 0;
+
+			for (int i = 0; i < this.size; i++) {
+				if (this.origins[i] == origin) continue;
+
+				if (kept != i) {
+					this.x[kept] = this.x[i];
+					this.y[kept] = this.y[i];
+					this.z[kept] = this.z[i];
+					this.luminance[kept] = this.luminance[i];
+					this.radiiSquared[kept] = this.radiiSquared[i];
+					this.inverseRadiiSquared[kept] = this.inverseRadiiSquared[i];
+					this.origins[kept] = this.origins[i];
+				}
+				kept++;
+			}
+
+			int removed = this.size - kept;
+			this.size = kept;
+			return removed;
+		}
+
+		/**
+		 * Sorts the light sources by descending luminance, and computes the bounds of the cell.
+		 */
+		void computeBounds() {
+			if (!this.isSortedByDescendingLuminance()) {
+				it.unimi.dsi.fastutil.Arrays.quickSort(0, this.size, this, this);
+			}
+
+			int maxRadiusSquared = 0;
+			long minInverseRadiusSquared = Long.MAX_VALUE;
+			for (int i = 0; i < this.size; i++) {
+				maxRadiusSquared = Math.max(maxRadiusSquared, this.radiiSquared[i]);
+				minInverseRadiusSquared = Math.min(minInverseRadiusSquared, this.inverseRadiiSquared[i]);
+			}
+
+			this.maxRadiusSquared = maxRadiusSquared;
+			this.minInverseRadiusSquared = minInverseRadiusSquared;
+		}
+
+		private boolean isSortedByDescendingLuminance() {
+			for (int i = 1; i < this.size; i++) {
+				if (this.luminance[i] > this.luminance[i - 1]) return false;
+			}
+
+			return true;
+		}
+
+		@Override
+		public int compare(int a, int b) {
+			return Integer.compare(this.luminance[b], this.luminance[a]);
+		}
+
+		@Override
+		public void swap(int a, int b) {
+			GridSpatialIndex.swap(this.x, a, b);
+			GridSpatialIndex.swap(this.y, a, b);
+			GridSpatialIndex.swap(this.z, a, b);
+			GridSpatialIndex.swap(this.luminance, a, b);
+			GridSpatialIndex.swap(this.radiiSquared, a, b);
+			GridSpatialIndex.swap(this.inverseRadiiSquared, a, b);
+			GridSpatialIndex.swap(this.origins, a, b);
+		}
+	}
+}
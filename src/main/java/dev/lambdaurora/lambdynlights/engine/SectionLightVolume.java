@@ -0,0 +1,166 @@
+/*
+ * Copyright © 2024 LambdAurora <email@lambdaurora.dev>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the Lambda License. For more information,
+ * see the LICENSE file.
+ */
+
+package dev.lambdaurora.lambdynlights.engine;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Represents the precomputed dynamic light of a chunk section and of its one block wide border.
+ * <p>
+ * The light levels are quantized in sixteenths of a light level, which is the precision the lightmap coordinates use,
+ * and are stored with the X coordinate varying the fastest, then the Y coordinate, then the Z coordinate.
+ * <p>
+ * A volume only remembers the generation of the snapshot it was computed from, never the snapshot or the build itself,
+ * so it is computed again as soon as a new snapshot is published and keeps nothing reachable in between.
+ *
+ * @author LambdAurora
+ * @version 3.3.0
+ * @since 3.3.0
+ */
+final class SectionLightVolume {
+	static final int SIZE = 16 + 2;
+	private static final int NO_GENERATION = -1;
+
+	private final byte[] levels = new byte[SIZE * SIZE * SIZE];
+	private int minX;
+	private int minY;
+	private int minZ;
+	private int generation = NO_GENERATION;
+
+	/**
+	 * {@return {@code true} if this volume holds the given position for the given snapshot generation, or {@code false} otherwise}
+	 *
+	 * @param x the X coordinate of the position
+	 * @param y the Y coordinate of the position
+	 * @param z the Z coordinate of the position
+	 * @param generation the generation of the latest published snapshot
+	 */
+	boolean contains(int x, int y, int z, int generation) {
+		return this.generation == generation
+				&& Integer.compareUnsigned(x - this.minX, SIZE) < 0
+				&& Integer.compareUnsigned(y - this.minY, SIZE) < 0
+				&& Integer.compareUnsigned(z - this.minZ, SIZE) < 0;
+	}
+
+	/**
+	 * Returns the quantized dynamic light level at the given position, which must be contained in this volume.
+	 *
+	 * @param x the X coordinate of the position
+	 * @param y the Y coordinate of the position
+	 * @param z the Z coordinate of the position
+	 * @return the dynamic light level in sixteenths of a light level
+	 */
+	int get(int x, int y, int z) {
+		return this.levels[index(x - this.minX, y - this.minY, z - this.minZ)] & 0xff;
+	}
+
+	/**
+	 * Computes the dynamic light of the given chunk section from the given snapshot.
+	 *
+	 * @param sectionX the X coordinate of the chunk section
+	 * @param sectionY the Y coordinate of the chunk section
+	 * @param sectionZ the Z coordinate of the chunk section
+	 * @param snapshot the snapshot to compute the light from
+	 */
+	void compute(int sectionX, int sectionY, int sectionZ, @NotNull DynamicLightingSnapshot snapshot) {
+		this.minX = (sectionX << 4) - 1;
+		this.minY = (sectionY << 4) - 1;
+		this.minZ = (sectionZ << 4) - 1;
+		this.generation = snapshot.generation();
+		Arrays.fill(this.levels, (byte) 0);
+		snapshot.fillDynamicLightLevels(this.levels, this.minX, this.minY, this.minZ, SIZE, SIZE, SIZE);
+	}
+
+	/**
+	 * Adds the light of the given light source to the given block range.
+	 *
+	 * @param levels the light levels of the block range, in sixteenths of a light level
+	 * @param sizeX the size of the block range on the X axis
+	 * @param sizeY the size of the block range on the Y axis
+	 * @param sizeZ the size of the block range on the Z axis
+	 * @param sourceX the X coordinate of the light source relative to the origin of the block range, in fixed-point
+	 * @param sourceY the Y coordinate of the light source relative to the origin of the block range, in fixed-point
+	 * @param sourceZ the Z coordinate of the light source relative to the origin of the block range, in fixed-point
+	 * @param luminance the luminance of the light source
+	 * @param radiusSquared the squared effective radius of the light source, in fixed-point
+	 * @param inverseRadiusSquared the inverse of the squared radius of the light source
+	 * @param falloff the falloff of the light
+	 * @see FalloffTable
+	 */
+	static void addLightSource(
+			byte[] levels, int sizeX, int sizeY, int sizeZ,
+			int sourceX, int sourceY, int sourceZ, int luminance, int radiusSquared, long inverseRadiusSquared,
+			FalloffTable falloff
+	) {
+		// Only iterate over the blocks whose center is within the effective radius of the light source,
+		// the square root of an integer this small is exact once rounded down.
+		int radius = (int) Math.sqrt(radiusSquared);
+		int startY = Math.max(0, firstBlockAfter(sourceY - radius));
+		int startZ = Math.max(0, firstBlockAfter(sourceZ - radius));
+		int endY = Math.min(sizeY - 1, lastBlockBefore(sourceY + radius));
+		int endZ = Math.min(sizeZ - 1, lastBlockBefore(sourceZ + radius));
+
+		for (int z = startZ; z <= endZ; z++) {
+			int dz = blockCenter(z) - sourceZ;
+			int dzSquared = dz * dz;
+
+			for (int y = startY; y <= endY; y++) {
+				int dy = blockCenter(y) - sourceY;
+				int dySquared = dy * dy;
+				int remaining = radiusSquared - dySquared - dzSquared;
+				if (remaining < 0) continue;
+
+				// Clip the row to the circle the sphere of light draws on it.
+				int halfWidth = (int) Math.sqrt(remaining);
+				int startX = Math.max(0, firstBlockAfter(sourceX - halfWidth));
+				int endX = Math.min(sizeX - 1, lastBlockBefore(sourceX + halfWidth));
+				int index = (z * sizeY + y) * sizeX + startX;
+
+				for (int x = startX; x <= endX; x++, index++) {
+					int dx = blockCenter(x) - sourceX;
+					int relativeDistanceSquared = FalloffTable.relativeDistanceSquared(dx * dx + dySquared + dzSquared, inverseRadiusSquared);
+					int level = Math.min(falloff.level(luminance, relativeDistanceSquared), FalloffTable.MAX_LEVEL);
+
+					if (level > (levels[index] & 0xff)) {
+						levels[index] = (byte) level;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * {@return the first block whose center is at or after the given fixed-point coordinate}
+	 *
+	 * @param coordinate the fixed-point coordinate
+	 */
+	private static int firstBlockAfter(int coordinate) {
+		return -((FalloffTable.HALF_BLOCK - coordinate) >> FalloffTable.POSITION_SHIFT);
+	}
+
+	/**
+	 * {@return the last block whose center is at or before the given fixed-point coordinate}
+	 *
+	 * @param coordinate the fixed-point coordinate
+	 */
+	private static int lastBlockBefore(int coordinate) {
+		return (coordinate - FalloffTable.HALF_BLOCK) >> FalloffTable.POSITION_SHIFT;
+	}
+
+	private static int blockCenter(int block) {
+		return (block << FalloffTable.POSITION_SHIFT) + FalloffTable.HALF_BLOCK;
+	}
+
+	private static int index(int x, int y, int z) {
+		return (z * SIZE + y) * SIZE + x;
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2024 LambdAurora <email@lambdaurora.dev>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the Lambda License. For more information,
+ * see the LICENSE file.
+ */
+
+package dev.lambdaurora.lambdynlights.engine;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.BiFunction;
+
+/**
+ * Represents an immutable spatial index over the light sources captured in a snapshot, which answers the dynamic light queries.
+ * <p>
+ * Several strategies are available, as none of them is the best for every distribution of light sources,
+ * the engine picks one of them every time it publishes a snapshot, see {@link Type}.
+ *
+ * @author LambdAurora
+ * @version 3.3.0
+ * @since 3.3.0
+ */
+interface SpatialIndex {
+	/**
+	 * The kernel to compute the light of the runs of light sources with, shared by every spatial index.
+	 */
+	DynamicLightKernel KERNEL = DynamicLightKernel.create();
+
+	/**
+	 * {@return the type of this spatial index}
+	 */
+	@NotNull Type type();
+
+	/**
+	 * Computes the dynamic light level at the specified position.
+	 *
+	 * @param x the X coordinate of the position
+	 * @param y the Y coordinate of the position
+	 * @param z the Z coordinate of the position
+	 * @return the dynamic light level at the specified position, in sixteenths of a light level
+	 * which may exceed {@link FalloffTable#MAX_LEVEL}
+	 */
+	int computeDynamicLightLevel(int x, int y, int z);
+
+	/**
+	 * Computes the dynamic light of the given block range.
+	 *
+	 * @param levels the light levels of the block range to fill, in sixteenths of a light level, which must be zeroed
+	 * @param minX the minimum X coordinate of the block range
+	 * @param minY the minimum Y coordinate of the block range
+	 * @param minZ the minimum Z coordinate of the block range
+	 * @param sizeX the size of the block range on the X axis
+	 * @param sizeY the size of the block range on the Y axis
+	 * @param sizeZ the size of the block range on the Z axis
+	 * @see DynamicLightingEngine#getDynamicLightLevels(int, int, int, int, int, int, byte[])
+	 */
+	void fillDynamicLightLevels(byte[] levels, int minX, int minY, int minZ, int sizeX, int sizeY, int sizeZ);
+
+	/**
+	 * Marks this spatial index as read by the calling thread, until {@link #release()} is called.
+	 * <p>
+	 * This only matters to the spatial indices which are updated in place once no longer published, see {@link GridSpatialIndex}.
+	 */
+	default void acquire() {
+	}
+
+	/**
+	 * Marks this spatial index as no longer read by the calling thread.
+	 *
+	 * @see #acquire()
+	 */
+	default void release() {
+	}
+
+	/**
+	 * Represents the types of spatial index.
+	 */
+	enum Type {
+		/**
+		 * A single grid whose cells are twice as large as the largest effective radius,
+		 * which is the best for a handful of scattered light sources.
+		 */
+		UNIFORM_GRID(GridSpatialIndex::uniform),
+		/**
+		 * A fine grid with a coarse grid for the few light sources reaching further,
+		 * so the queries don't pay for the largest radius.
+		 */
+		MULTI_LEVEL_GRID(GridSpatialIndex::multiLevel),
+		/**
+		 * A bounding volume hierarchy, which is the best when many light sources are packed together
+		 * as whole groups of light sources are skipped at once.
+		 */
+		TREE(TreeSpatialIndex::build);
+
+		private final BiFunction<CapturedLightSources, FalloffTable, SpatialIndex> factory;
+
+		Type(BiFunction<CapturedLightSources, FalloffTable, SpatialIndex> factory) {
+			this.factory = factory;
+		}
+
+		/**
+		 * Builds a spatial index of this type.
+		 *
+		 * @param sources the captured light sources
+		 * @param falloff the falloff of the light
+		 * @return the spatial index
+		 */
+		public @NotNull SpatialIndex build(@NotNull CapturedLightSources sources, @NotNull FalloffTable falloff) {
+			return this.factory.apply(sources, falloff);
+		}
+
+		/**
+		 * {@return the name of this type}
+		 */
+		public @NotNull String getName() {
+			return this.name().toLowerCase();
+		}
+
+		/**
+		 * Gets the type from its identifier.
+		 *
+		 * @param id the identifier of the type
+		 * @return the type if found, else empty
+		 */
+		public static @NotNull Optional<Type> byId(@NotNull String id) {
+			return Arrays.stream(values()).filter(type -> type.getName().equalsIgnoreCase(id)).findFirst();
+		}
+	}
+}
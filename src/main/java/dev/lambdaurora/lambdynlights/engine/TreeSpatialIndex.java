@@ -0,0 +1,492 @@
+/*
+ * Copyright © 2024 LambdAurora <email@lambdaurora.dev>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the Lambda License. For more information,
+ * see the LICENSE file.
+ */
+
+package dev.lambdaurora.lambdynlights.engine;
+
+import it.unimi.dsi.fastutil.Swapper;
+import it.unimi.dsi.fastutil.ints.IntComparator;
+import net.minecraft.util.math.MathHelper;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Represents a spatial index made of a bounding volume hierarchy, built like a k-d tree by splitting the light sources
+ * at the median of the longest axis of their bounds until the leaves are small enough.
+ * <p>
+ * Each node knows the bounds of the positions of its light sources, their brightest luminance and their largest radius,
+ * so a query skips a whole node once even its closest point can't exceed the current result.
+ * The nearest child is visited first, which makes the result grow quickly.
+ * This is what makes it outperform the grids when many light sources are packed together:
+ * a grid has to look at every light source of a crowded cell, while the tree only looks at the few nearest ones.
+ * <p>
+ * The positions of the nodes are stored in fixed-point relative to the origin of the tree, and the positions of the light sources
+ * relative to the minimum corner of their leaf, as described in {@link FalloffTable}.
+ * The leaves are kept small enough for the differences of positions within them to never overflow.
+ *
+ * @author LambdAurora
+ * @version 3.3.0
+ * @since 3.3.0
+ */
+final class TreeSpatialIndex implements SpatialIndex {
+	/**
+	 * The largest extent of the light sources on any axis the tree supports, in blocks.
+	 */
+	static final int MAX_EXTENT = 1 << 20;
+	// Queries further than this from the bounds of the tree are never lit, as no radius is that large.
+	private static final int MARGIN = 16;
+	private static final int LEAF_SIZE = 8;
+	private static final int LEAF_EXTENT = 32 << FalloffTable.POSITION_SHIFT;
+	// Filling a block range block by block is cheaper than light source by light source past this many light sources per block.
+	private static final int POINT_QUERIES_SOURCE_RATIO = 8;
+	private static final int LEAF = -1;
+
+	private final FalloffTable falloff;
+	private final int originX;
+	private final int originY;
+	private final int originZ;
+	private final int[] x;
+	private final int[] y;
+	private final int[] z;
+	private final int[] luminance;
+	private final int[] radiiSquared;
+	private final long[] inverseRadiiSquared;
+
+	private final int[] nodeMinX;
+	private final int[] nodeMinY;
+	private final int[] nodeMinZ;
+	private final int[] nodeMaxX;
+	private final int[] nodeMaxY;
+	private final int[] nodeMaxZ;
+	// The brightest luminance of the light sources of each node.
+	private final int[] nodeLuminance;
+	// The largest squared effective radius of the light sources of each node.
+	private final int[] nodeRadiiSquared;
+	// The inverse of the largest squared radius of the light sources of each node.
+	private final long[] nodeInverseRadiiSquared;
+	// The children of each inner node, the left child of a leaf is LEAF.
+	private final int[] nodeLeft;
+	private final int[] nodeRight;
+	// The range of light sources of each leaf.
+	private final int[] nodeStart;
+	private final int[] nodeEnd;
+	private int nodeCount = 0;
+
+	private TreeSpatialIndex(CapturedLightSources sources, FalloffTable falloff) {
+		int size = sources.size();
+		this.falloff = falloff;
+		this.originX = MathHelper.floor(sources.minX());
+		this.originY = MathHelper.floor(sources.minY());
+		this.originZ = MathHelper.floor(sources.minZ());
+		this.x = new int[size];
+		this.y = new int[size];
+		this.z = new int[size];
+		this.luminance = new int[size];
+		this.radiiSquared = new int[size];
+		this.inverseRadiiSquared = new long[size];
+
+		for (int i = 0; i < size; i++) {
+			this.x[i] = toFixedPoint(sources.x[i] - this.originX);
+			this.y[i] = toFixedPoint(sources.y[i] - this.originY);
+			this.z[i] = toFixedPoint(sources.z[i] - this.originZ);
+			this.luminance[i] = sources.luminance[i];
+			this.radiiSquared[i] = sources.radiiSquared[i];
+			this.inverseRadiiSquared[i] = sources.inverseRadiiSquared[i];
+		}
+
+		// A binary tree whose leaves hold at least a light source has less than twice as many nodes as light sources.
+		int capacity = Math.max(1, 2 * size);
+		this.nodeMinX = new int[capacity];
+		this.nodeMinY = new int[capacity];
+		this.nodeMinZ = new int[capacity];
+		this.nodeMaxX = new int[capacity];
+		this.nodeMaxY = new int[capacity];
+		this.nodeMaxZ = new int[capacity];
+		this.nodeLuminance = new int[capacity];
+		this.nodeRadiiSquared = new int[capacity];
+		this.nodeInverseRadiiSquared = new long[capacity];
+		this.nodeLeft = new int[capacity];
+		this.nodeRight = new int[capacity];
+		this.nodeStart = new int[capacity];
+		this.nodeEnd = new int[capacity];
+
+		if (size != 0) {
+			Swapper swapper = (a, b) -> {
+				swap(this.x, a, b);
+				swap(this.y, a, b);
+				swap(this.z, a, b);
+				swap(this.luminance, a, b);
+				swap(this.radiiSquared, a, b);
+				swap(this.inverseRadiiSquared, a, b);
+			};
+			this.buildNode(0, size, swapper);
+		}
+	}
+
+	/**
+	 * Builds a spatial index made of a bounding volume hierarchy.
+	 * <p>
+	 * If the light sources are spread too far apart for the tree, see {@link #MAX_EXTENT}, a multi-level grid is built instead.
+	 *
+	 * @param sources the captured light sources
+	 * @param falloff the falloff of the light
+	 * @return the spatial index
+	 */
+	static @NotNull SpatialIndex build(@NotNull CapturedLightSources sources, @NotNull FalloffTable falloff) {
+		if (!supports(sources)) {
+			return GridSpatialIndex.multiLevel(sources, falloff);
+		}
+
+		return new TreeSpatialIndex(sources, falloff);
+	}
+
+	/**
+	 * {@return {@code true} if the given light sources are close enough together for the tree, or {@code false} otherwise}
+	 *
+	 * @param sources the captured light sources
+	 */
+	static boolean supports(@NotNull CapturedLightSources sources) {
+		return sources.extent() < MAX_EXTENT;
+	}
+
+	/**
+	 * Builds the node of the given range of light sources and its children.
+	 *
+	 * @param start the index of the first light source of the node, inclusive
+	 * @param end the index of the last light source of the node, exclusive
+	 * @param swapper the swapper of the light sources
+	 * @return the index of the node
+	 */
+	private int buildNode(int start, int end, Swapper swapper) {
+		int node = this.nodeCount++;
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+		int maxLuminance = 0;
+		int maxRadiusSquared = 0;
+		long minInverseRadiusSquared = Long.MAX_VALUE;
+
+		for (int i = start; i < end; i++) {
+			minX = Math.min(minX, this.x[i]);
+			minY = Math.min(minY, this.y[i]);
+			minZ = Math.min(minZ, this.z[i]);
+			maxX = Math.max(maxX, this.x[i]);
+			maxY = Math.max(maxY, this.y[i]);
+			maxZ = Math.max(maxZ, this.z[i]);
+			maxLuminance = Math.max(maxLuminance, this.luminance[i]);
+			maxRadiusSquared = Math.max(maxRadiusSquared, this.radiiSquared[i]);
+			minInverseRadiusSquared = Math.min(minInverseRadiusSquared, this.inverseRadiiSquared[i]);
+		}
+
+		this.nodeMinX[node] = minX;
+		this.nodeMinY[node] = minY;
+		this.nodeMinZ[node] = minZ;
+		this.nodeMaxX[node] = maxX;
+		this.nodeMaxY[node] = maxY;
+		this.nodeMaxZ[node] = maxZ;
+		this.nodeLuminance[node] = maxLuminance;
+		this.nodeRadiiSquared[node] = maxRadiusSquared;
+		this.nodeInverseRadiiSquared[node] = minInverseRadiusSquared;
+		this.nodeStart[node] = start;
+		this.nodeEnd[node] = end;
+
+		int extentX = maxX - minX;
+		int extentY = maxY - minY;
+		int extentZ = maxZ - minZ;
+
+		if (end - start <= LEAF_SIZE && Math.max(extentX, Math.max(extentY, extentZ)) <= LEAF_EXTENT) {
+			// The light sources of a leaf are sorted by descending luminance so the kernel can stop early,
+			// and made relative to the minimum corner of the leaf.
+			int[] luminance = this.luminance;
+			IntComparator byDescendingLuminance = (a, b) -> Integer.compare(luminance[b], luminance[a]);
+			it.unimi.dsi.fastutil.Arrays.quickSort(start, end, byDescendingLuminance, swapper);
+
+			for (int i = start; i < end; i++) {
+				this.x[i] -= minX;
+				this.y[i] -= minY;
+				this.z[i] -= minZ;
+			}
+
+			this.nodeLeft[node] = LEAF;
+			return node;
+		}
+
+		int[] coordinates = extentX >= extentY && extentX >= extentZ ? this.x : (extentY >= extentZ ? this.y : this.z);
+		int middle = (start + end) >>> 1;
+		selectMedian(coordinates, start, end - 1, middle, swapper);
+
+		this.nodeLeft[node] = this.buildNode(start, middle, swapper);
+		this.nodeRight[node] = this.buildNode(middle, end, swapper);
+		return node;
+	}
+
+	@Override
+	public @NotNull Type type() {
+		return Type.TREE;
+	}
+
+	@Override
+	public int computeDynamicLightLevel(int x, int y, int z) {
+		if (this.nodeCount == 0
+				|| isOutside((long) x - this.originX) || isOutside((long) y - this.originY) || isOutside((long) z - this.originZ)) {
+			return 0;
+		}
+
+		return this.visit(0,
+				(int) blockCenter((long) x - this.originX), (int) blockCenter((long) y - this.originY), (int) blockCenter((long) z - this.originZ),
+				0
+		);
+	}
+
+	/**
+	 * Visits the given node to compute the dynamic light level at the given position.
+	 *
+	 * @param node the node
+	 * @param x the X coordinate of the position relative to the origin of the tree, in fixed-point
+	 * @param y the Y coordinate of the position relative to the origin of the tree, in fixed-point
+	 * @param z the Z coordinate of the position relative to the origin of the tree, in fixed-point
+	 * @param result the current dynamic light level, in sixteenths of a light level
+	 * @return the dynamic light level, in sixteenths of a light level
+	 */
+	private int visit(int node, int x, int y, int z, int result) {
+		int maxLuminance = this.nodeLuminance[node];
+		if (maxLuminance << 4 <= result) return result;
+
+		// No light source of the node is brighter or reaches further than its brightest luminance and its largest radius.
+		long distanceSquared = this.distanceSquaredToNode(node, x, y, z);
+		if (distanceSquared > this.nodeRadiiSquared[node]) return result;
+
+		int relativeDistanceSquared = FalloffTable.relativeDistanceSquared((int) distanceSquared, this.nodeInverseRadiiSquared[node]);
+		if (this.falloff.level(maxLuminance, relativeDistanceSquared) <= result) return result;
+
+		if (this.nodeLeft[node] == LEAF) {
+			return KERNEL.maxDynamicLightLevel(x - this.nodeMinX[node], y - this.nodeMinY[node], z - this.nodeMinZ[node],
+					this.x, this.y, this.z, this.luminance, this.radiiSquared, this.inverseRadiiSquared,
+					this.nodeStart[node], this.nodeEnd[node],
+					this.falloff,
+					result
+			);
+		}
+
+		int near = this.nodeLeft[node];
+		int far = this.nodeRight[node];
+		if (this.distanceSquaredToNode(far, x, y, z) < this.distanceSquaredToNode(near, x, y, z)) {
+			near = far;
+			far = this.nodeLeft[node];
+		}
+
+		result = this.visit(near, x, y, z, result);
+
+		if (result < FalloffTable.MAX_LEVEL) {
+			result = this.visit(far, x, y, z, result);
+		}
+
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * When only a few light sources reach the block range, the light is computed light source by light source.
+	 * Otherwise, each block is queried on its own, as the tree then skips most light sources.
+	 *
+	 * @see SectionLightVolume#addLightSource(byte[], int, int, int, int, int, int, int, int, long, FalloffTable)
+	 */
+	@Override
+	public void fillDynamicLightLevels(byte[] levels, int minX, int minY, int minZ, int sizeX, int sizeY, int sizeZ) {
+		if (this.nodeCount == 0) return;
+
+		long relativeMinX = (long) minX - this.originX;
+		long relativeMinY = (long) minY - this.originY;
+		long relativeMinZ = (long) minZ - this.originZ;
+		if (isOutside(relativeMinX, sizeX) || isOutside(relativeMinY, sizeY) || isOutside(relativeMinZ, sizeZ)) return;
+
+		// The bounds of the block centers of the block range, relative to the origin of the tree in fixed-point.
+		var range = new long[] {
+				blockCenter(relativeMinX), blockCenter(relativeMinY), blockCenter(relativeMinZ),
+				blockCenter(relativeMinX + sizeX - 1), blockCenter(relativeMinY + sizeY - 1), blockCenter(relativeMinZ + sizeZ - 1)
+		};
+
+		int reachingSources = this.countReachingSources(0, range);
+		if (reachingSources == 0) return;
+
+		if ((long) reachingSources * POINT_QUERIES_SOURCE_RATIO > (long) sizeX * sizeY * sizeZ) {
+			int index = 0;
+
+			for (int z = 0; z < sizeZ; z++) {
+				for (int y = 0; y < sizeY; y++) {
+					for (int x = 0; x < sizeX; x++, index++) {
+						int level = this.visit(0,
+								(int) (range[0] + ((long) x << FalloffTable.POSITION_SHIFT)),
+								(int) (range[1] + ((long) y << FalloffTable.POSITION_SHIFT)),
+								(int) (range[2] + ((long) z << FalloffTable.POSITION_SHIFT)),
+								0
+						);
+						levels[index] = (byte) Math.min(level, FalloffTable.MAX_LEVEL);
+					}
+				}
+			}
+		} else {
+			this.addReachingSources(0, range, levels, sizeX, sizeY, sizeZ);
+		}
+	}
+
+	/**
+	 * {@return the number of light sources of the given node which may reach the given block range}
+	 *
+	 * @param node the node
+	 * @param range the bounds of the block centers of the block range
+	 */
+	private int countReachingSources(int node, long[] range) {
+		if (this.distanceSquaredToNode(node, range) > this.nodeRadiiSquared[node]) return 0;
+
+		if (this.nodeLeft[node] == LEAF) {
+			return this.nodeEnd[node] - this.nodeStart[node];
+		}
+
+		return this.countReachingSources(this.nodeLeft[node], range) + this.countReachingSources(this.nodeRight[node], range);
+	}
+
+	/**
+	 * Adds the light of the light sources of the given node which may reach the given block range.
+	 *
+	 * @param node the node
+	 * @param range the bounds of the block centers of the block range
+	 * @param levels the light levels of the block range, in sixteenths of a light level
+	 * @param sizeX the size of the block range on the X axis
+	 * @param sizeY the size of the block range on the Y axis
+	 * @param sizeZ the size of the block range on the Z axis
+	 */
+	private void addReachingSources(int node, long[] range, byte[] levels, int sizeX, int sizeY, int sizeZ) {
+		if (this.distanceSquaredToNode(node, range) > this.nodeRadiiSquared[node]) return;
+
+		if (this.nodeLeft[node] != LEAF) {
+			this.addReachingSources(this.nodeLeft[node], range, levels, sizeX, sizeY, sizeZ);
+			this.addReachingSources(this.nodeRight[node], range, levels, sizeX, sizeY, sizeZ);
+			return;
+		}
+
+		// The origin of the leaf relative to the origin of the block range, in fixed-point.
+		int originX = (int) (this.nodeMinX[node] - range[0] + FalloffTable.HALF_BLOCK);
+		int originY = (int) (this.nodeMinY[node] - range[1] + FalloffTable.HALF_BLOCK);
+		int originZ = (int) (this.nodeMinZ[node] - range[2] + FalloffTable.HALF_BLOCK);
+
+		for (int i = this.nodeStart[node]; i < this.nodeEnd[node]; i++) {
+			SectionLightVolume.addLightSource(levels, sizeX, sizeY, sizeZ,
+					originX + this.x[i], originY + this.y[i], originZ + this.z[i],
+					this.luminance[i], this.radiiSquared[i], this.inverseRadiiSquared[i],
+					this.falloff
+			);
+		}
+	}
+
+	/**
+	 * Moves the light sources of the given range so the one at the given index ends up where it would be once sorted by coordinate,
+	 * with no greater coordinate before it and no lower coordinate after it.
+	 * <p>
+	 * Unlike sorting, this takes a linear time on average, which keeps the build of the tree fast.
+	 *
+	 * @param coordinates the coordinates of the light sources on the axis to split
+	 * @param low the index of the first light source of the range, inclusive
+	 * @param high the index of the last light source of the range, inclusive
+	 * @param index the index to select
+	 * @param swapper the swapper of the light sources
+	 */
+	private static void selectMedian(int[] coordinates, int low, int high, int index, Swapper swapper) {
+		while (low < high) {
+			int pivot = coordinates[(low + high) >>> 1];
+			int i = low;
+			int j = high;
+
+			while (i <= j) {
+				while (coordinates[i] < pivot) i++;
+				while (coordinates[j] > pivot) j--;
+
+				if (i <= j) {
+					swapper.swap(i, j);
+					i++;
+					j--;
+				}
+			}
+
+			// The light sources between j and i all have the pivot coordinate.
+			if (index <= j) {
+				high = j;
+			} else if (index >= i) {
+				low = i;
+			} else {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * {@return the squared distance between the given position and the bounds of the given node, in fixed-point}
+	 *
+	 * @param node the node
+	 * @param x the X coordinate of the position relative to the origin of the tree, in fixed-point
+	 * @param y the Y coordinate of the position relative to the origin of the tree, in fixed-point
+	 * @param z the Z coordinate of the position relative to the origin of the tree, in fixed-point
+	 */
+	private long distanceSquaredToNode(int node, int x, int y, int z) {
+		long dx = Math.max(0, Math.max(this.nodeMinX[node] - x, x - this.nodeMaxX[node]));
+		long dy = Math.max(0, Math.max(this.nodeMinY[node] - y, y - this.nodeMaxY[node]));
+		long dz = Math.max(0, Math.max(this.nodeMinZ[node] - z, z - this.nodeMaxZ[node]));
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	/**
+	 * {@return the squared distance between the given bounds and the bounds of the given node, in fixed-point}
+	 *
+	 * @param node the node
+	 * @param range the bounds relative to the origin of the tree in fixed-point, the minimum corner then the maximum corner
+	 */
+	private long distanceSquaredToNode(int node, long[] range) {
+		long dx = Math.max(0, Math.max(this.nodeMinX[node] - range[3], range[0] - this.nodeMaxX[node]));
+		long dy = Math.max(0, Math.max(this.nodeMinY[node] - range[4], range[1] - this.nodeMaxY[node]));
+		long dz = Math.max(0, Math.max(this.nodeMinZ[node] - range[5], range[2] - this.nodeMaxZ[node]));
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	/**
+	 * {@return {@code true} if the given block can't be lit by the tree, or {@code false} otherwise}
+	 *
+	 * @param relative the coordinate of the block relative to the origin of the tree
+	 */
+	private static boolean isOutside(long relative) {
+		return isOutside(relative, 1);
+	}
+
+	/**
+	 * {@return {@code true} if the given blocks can't be lit by the tree, or {@code false} otherwise}
+	 *
+	 * @param relativeMin the minimum coordinate of the blocks relative to the origin of the tree
+	 * @param size the number of blocks
+	 */
+	private static boolean isOutside(long relativeMin, int size) {
+		return relativeMin + size <= -MARGIN || relativeMin >= MAX_EXTENT + MARGIN;
+	}
+
+	private static int toFixedPoint(double coordinate) {
+		return (int) Math.round(coordinate * (1 << FalloffTable.POSITION_SHIFT));
+	}
+
+	private static long blockCenter(long relative) {
+		return (relative << FalloffTable.POSITION_SHIFT) + FalloffTable.HALF_BLOCK;
+	}
+
+	private static void swap(int[] array, int a, int b) {
+		int value = array[a];
+		array[a] = array[b];
+		array[b] = value;
+	}
+
+	private static void swap(long[] array, int a, int b) {
+		long value = array[a];
+		array[a] = array[b];
+		array[b] = value;
+	}
+}
@@ -151,6 +151,7 @@ public class SettingsScreen extends SpruceScreen {
 	private void buildGeneralTab(TabContext context) {
 		var list = new SpruceOptionListWidget(Position.of(0, 0), context.width(), context.height());
 		list.addSingleOptionEntry(this.config.dynamicLightsModeOption);
+		list.addSingleOptionEntry(this.config.falloffCurveOption);
 		list.addSingleOptionEntry(new SpruceSeparatorOption(DYNAMIC_LIGHT_SOURCES_KEY, true, null));
 		list.addOptionEntry(this.entitiesOption, this.selfOption);
 		list.addOptionEntry(this.waterSensitiveOption, null);
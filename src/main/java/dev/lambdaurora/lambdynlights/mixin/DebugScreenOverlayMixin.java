@@ -11,7 +11,6 @@ package dev.lambdaurora.lambdynlights.mixin;
 
 import dev.lambdaurora.lambdynlights.LambDynLights;
 import dev.lambdaurora.lambdynlights.LambDynLightsConstants;
-import dev.lambdaurora.lambdynlights.engine.DynamicLightingEngine;
 import net.minecraft.TextFormatting;
 import net.minecraft.client.gui.components.DebugScreenOverlay;
 import org.spongepowered.asm.mixin.Mixin;
@@ -20,12 +19,13 @@ import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 import java.util.List;
+import java.util.Locale;
 
 /**
  * Adds a debug string for dynamic light sources tracking and updates.
  *
  * @author LambdAurora
- * @version 3.2.2
+ * @version 3.3.0
  * @since 1.3.2
  */
 @Mixin(DebugScreenOverlay.class)
@@ -37,7 +37,7 @@ public class DebugScreenOverlayMixin {
 		var builder = new StringBuilder("Dynamic Light Sources: ");
 		builder.append(ldl.getLightSourcesCount())
 				.append("/")
-				.append(DynamicLightingEngine.MAX_LIGHT_SOURCES)
+				.append(ldl.getLightSourcesCapacity())
 				.append(" (U: ")
 				.append(ldl.getLastUpdateCount());
 
@@ -51,6 +51,17 @@ public class DebugScreenOverlayMixin {
 		builder.append(')');
 		list.add(builder.toString());
 
+		long hits = ldl.getQueryCacheHits();
+		long queries = hits + ldl.getQueryCacheMisses();
+		list.add(String.format(Locale.ROOT, "Dynamic Light Query Cache: %d/%d hits (%.1f%%) ; Index: %s (%d)",
+				hits, queries, queries == 0 ? 0.0 : hits * 100.0 / queries, ldl.getSpatialIndexName(), ldl.getIndexedLightSourcesCount()
+		));
+
+		list.add(String.format(Locale.ROOT, "Dynamic Light Chunk Rebuilds: %d/%d requested (%d deduplicated) ; Backlog: %d ; Deferred: %d",
+				ldl.getLastChunkRebuilds(), ldl.getLastChunkRebuildRequests(), ldl.getLastDuplicateChunkRebuildRequests(),
+				ldl.getChunkRebuildBacklog(), ldl.getDeferredChunkRebuilds()
+		));
+
 		if (LambDynLightsConstants.isDevMode()) {
 			list.add(TextFormatting.RED + LambDynLightsConstants.DEV_MODE_OVERLAY_TEXT);
 		}
@@ -0,0 +1,22 @@
+/*
+ * Copyright © 2024 LambdAurora <email@lambdaurora.dev>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the Lambda License. For more information,
+ * see the LICENSE file.
+ */
+
+package dev.lambdaurora.lambdynlights.mixin;
+
+import dev.lambdaurora.lambdynlights.accessor.FrustumAccessor;
+import net.minecraft.client.renderer.culling.Frustum;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Invoker;
+
+@Mixin(Frustum.class)
+public abstract class FrustumMixin implements FrustumAccessor {
+	@Invoker("cubeInFrustum")
+	@Override
+	public abstract boolean lambdynlights$isVisible(double minX, double minY, double minZ, double maxX, double maxY, double maxZ);
+}
@@ -13,20 +13,14 @@ import dev.lambdaurora.lambdynlights.DynamicLightSource;
 import dev.lambdaurora.lambdynlights.LambDynLights;
 import dev.lambdaurora.lambdynlights.api.DynamicLightHandlers;
 import net.minecraft.world.entity.Entity;
-import net.minecraft.world.entity.EntityType;
 import net.minecraft.world.entity.decoration.BlockAttachedEntity;
-import net.minecraft.world.level.Level;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 @Mixin(BlockAttachedEntity.class)
-public abstract class BlockAttachedEntityMixin extends Entity implements DynamicLightSource {
-	public BlockAttachedEntityMixin(EntityType<?> type, Level level) {
-		super(type, level);
-	}
-
+public abstract class BlockAttachedEntityMixin extends EntityMixin implements DynamicLightSource {
 	@Inject(method = "tick", at = @At("RETURN"))
 	public void lambdynlights$onTick(CallbackInfo ci) {
 		// We do not want to update the entity on the server.
@@ -34,10 +28,12 @@ public abstract class BlockAttachedEntityMixin extends Entity implements Dynamic
 			if (this.isRemoved()) {
 				this.setDynamicLightEnabled(false);
 			} else {
-				if (!LambDynLights.get().config.getEntitiesLightSource().get() || !DynamicLightHandlers.canLightUp(this))
+				if (!LambDynLights.get().config.getEntitiesLightSource().get() || !DynamicLightHandlers.canLightUp((Entity) (Object) this))
 					this.resetDynamicLight();
 				else
 					this.dynamicLightTick();
+				// BlockAttachedEntity#tick doesn't call the tick of Entity, so the radius is refreshed here instead.
+				this.lambdynlights$radius = DynamicLightHandlers.getRadiusFrom((Entity) (Object) this);
 				LambDynLights.updateTracking(this);
 			}
 		}
@@ -11,14 +11,12 @@ package dev.lambdaurora.lambdynlights.mixin.lightsource;
 
 import dev.lambdaurora.lambdynlights.DynamicLightSource;
 import dev.lambdaurora.lambdynlights.LambDynLights;
+import dev.lambdaurora.lambdynlights.LitChunkSectionTracker;
+import dev.lambdaurora.lambdynlights.UpdateTiers;
 import dev.lambdaurora.lambdynlights.api.DynamicLightHandlers;
-import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.LevelRenderer;
 import net.minecraft.core.BlockPos;
-import net.minecraft.core.ChunkSectionPos;
-import net.minecraft.core.Direction;
-import net.minecraft.util.math.MathHelper;
 import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.EntityType;
 import net.minecraft.world.level.ChunkPos;
@@ -68,6 +66,10 @@ public abstract class EntityMixin implements DynamicLightSource {
 	@Unique
 	private int lambdynlights$lastLuminance = 0;
 	@Unique
+	protected double lambdynlights$radius = DynamicLightSource.DEFAULT_RADIUS;
+	@Unique
+	private double lambdynlights$lastRadius = DynamicLightSource.DEFAULT_RADIUS;
+	@Unique
 	private long lambdynlights$lastUpdate = 0;
 	@Unique
 	private double lambdynlights$prevX;
@@ -75,8 +77,9 @@ public abstract class EntityMixin implements DynamicLightSource {
 	private double lambdynlights$prevY;
 	@Unique
 	private double lambdynlights$prevZ;
+	// The chunk sections lit up by this light source, only allocated once it is first updated as most entities never emit light.
 	@Unique
-	private LongOpenHashSet lambdynlights$trackedLitChunkPos = new LongOpenHashSet();
+	private LitChunkSectionTracker lambdynlights$litChunkSections;
 
 	@Inject(method = "tick", at = @At("TAIL"))
 	public void onTick(CallbackInfo ci) {
@@ -86,6 +89,7 @@ public abstract class EntityMixin implements DynamicLightSource {
 				this.setDynamicLightEnabled(false);
 			} else {
 				this.dynamicLightTick();
+				this.lambdynlights$radius = DynamicLightHandlers.getRadiusFrom((Entity) (Object) this);
 				if ((!LambDynLights.get().config.getEntitiesLightSource().get() && this.getType() != EntityType.PLAYER)
 						|| !DynamicLightHandlers.canLightUp((Entity) (Object) this))
 					this.lambdynlights$luminance = 0;
@@ -127,12 +131,15 @@ public abstract class EntityMixin implements DynamicLightSource {
 
 	@Override
 	public boolean shouldUpdateDynamicLight() {
-		var mode = LambDynLights.get().config.getDynamicLightsMode();
+		var config = LambDynLights.get().config;
+		var mode = config.getDynamicLightsMode();
 		if (!mode.isEnabled())
 			return false;
-		if (mode.hasDelay()) {
+
+		int delay = Math.max(mode.getDelay(), this.lambdynlights$getDistanceUpdateDelay(config.getUpdateTiers()));
+		if (delay != 0) {
 			long currentTime = System.currentTimeMillis();
-			if (currentTime < this.lambdynlights$lastUpdate + mode.getDelay()) {
+			if (currentTime < this.lambdynlights$lastUpdate + delay) {
 				return false;
 			}
 
@@ -141,6 +148,24 @@ public abstract class EntityMixin implements DynamicLightSource {
 		return true;
 	}
 
+	/**
+	 * {@return the update delay of this light source given its distance from the camera}
+	 *
+	 * @param tiers the distance tiers of the update rate
+	 */
+	@Unique
+	private int lambdynlights$getDistanceUpdateDelay(@NotNull UpdateTiers tiers) {
+		if (tiers.isEmpty()) return 0;
+
+		var camera = Minecraft.getInstance().getCameraEntity();
+		if (camera == null) return 0;
+
+		double dx = this.getX() - camera.getX();
+		double dy = this.getY() - camera.getY();
+		double dz = this.getZ() - camera.getZ();
+		return tiers.getDelay(dx * dx + dy * dy + dz * dz);
+	}
+
 	@Override
 	public void dynamicLightTick() {
 		this.lambdynlights$luminance = this.isOnFire() ? 15 : 0;
@@ -155,6 +180,11 @@ public abstract class EntityMixin implements DynamicLightSource {
 		return this.lambdynlights$luminance;
 	}
 
+	@Override
+	public double getDynamicLightRadius() {
+		return this.lambdynlights$radius;
+	}
+
 	@Override
 	public boolean lambdynlights$updateDynamicLight(@NotNull LevelRenderer renderer) {
 		if (!this.shouldUpdateDynamicLight())
@@ -164,56 +194,55 @@ public abstract class EntityMixin implements DynamicLightSource {
 		double deltaZ = this.getZ() - this.lambdynlights$prevZ;
 
 		int luminance = this.getLuminance();
+		double lightRadius = this.getDynamicLightRadius();
 
-		if (Math.abs(deltaX) > 0.1D || Math.abs(deltaY) > 0.1D || Math.abs(deltaZ) > 0.1D || luminance != this.lambdynlights$lastLuminance) {
+		if (Math.abs(deltaX) > 0.1D || Math.abs(deltaY) > 0.1D || Math.abs(deltaZ) > 0.1D
+				|| luminance != this.lambdynlights$lastLuminance || lightRadius != this.lambdynlights$lastRadius) {
 			this.lambdynlights$prevX = this.getX();
 			this.lambdynlights$prevY = this.getY();
 			this.lambdynlights$prevZ = this.getZ();
 			this.lambdynlights$lastLuminance = luminance;
+			this.lambdynlights$lastRadius = lightRadius;
 
-			var newPos = new LongOpenHashSet();
-
-			if (luminance > 0) {
-				var entityChunkPos = this.chunkPosition();
-				var chunkPos = new BlockPos.Mutable(entityChunkPos.x, ChunkSectionPos.blockToSectionCoord(this.getEyeY()), entityChunkPos.z);
-
-				LambDynLights.scheduleChunkRebuild(renderer, chunkPos);
-				LambDynLights.updateTrackedChunks(chunkPos, this.lambdynlights$trackedLitChunkPos, newPos);
-
-				var directionX = (this.getBlockPos().getX() & 15) >= 8 ? Direction.EAST : Direction.WEST;
-				var directionY = (MathHelper.floor(this.getEyeY()) & 15) >= 8 ? Direction.UP : Direction.DOWN;
-				var directionZ = (this.getBlockPos().getZ() & 15) >= 8 ? Direction.SOUTH : Direction.NORTH;
-
-				for (int i = 0; i < 7; i++) {
-					if (i % 4 == 0) {
-						chunkPos.move(directionX); // X
-					} else if (i % 4 == 1) {
-						chunkPos.move(directionZ); // XZ
-					} else if (i % 4 == 2) {
-						chunkPos.move(directionX.getOpposite()); // Z
-					} else {
-						chunkPos.move(directionZ.getOpposite()); // origin
-						chunkPos.move(directionY); // Y
-					}
-					LambDynLights.scheduleChunkRebuild(renderer, chunkPos);
-					LambDynLights.updateTrackedChunks(chunkPos, this.lambdynlights$trackedLitChunkPos, newPos);
-				}
+			// A light source merged with co-located ones may move within its cluster without changing the light,
+			// the dynamic lighting engine then keeps its previous state.
+			if (LambDynLights.get().isUnchangedWithinCluster(this)) {
+				return false;
 			}
 
-			// Schedules the rebuild of removed chunks.
-			this.lambdynlights$scheduleTrackedChunksRebuild(renderer);
-			// Update tracked lit chunks.
-			this.lambdynlights$trackedLitChunkPos = newPos;
-			return true;
+			var litChunkSections = this.lambdynlights$litChunkSections;
+			if (litChunkSections == null) {
+				litChunkSections = this.lambdynlights$litChunkSections = new LitChunkSectionTracker();
+			}
+
+			// The chunk sections no longer lit up only need to be rebuilt if they are rendered.
+			boolean rebuildRemoved = Minecraft.getInstance().level == this.level();
+			// If the light renders the same everywhere, the dynamic lighting engine can keep the previous state of this light source.
+			return LambDynLights.get().updateLitChunkSections(litChunkSections,
+					this.getDynamicLightX(), this.getDynamicLightY(), this.getDynamicLightZ(), luminance, lightRadius,
+					LambDynLights.get().isClustered(this), rebuildRemoved
+			);
 		}
 		return false;
 	}
 
 	@Override
 	public void lambdynlights$scheduleTrackedChunksRebuild(@NotNull LevelRenderer renderer) {
+		if (this.lambdynlights$litChunkSections == null) return;
+
 		if (Minecraft.getInstance().level == this.level())
-			for (long pos : this.lambdynlights$trackedLitChunkPos) {
-				LambDynLights.scheduleChunkRebuild(renderer, pos);
-			}
+			this.lambdynlights$litChunkSections.forEach(LambDynLights::scheduleChunkRebuild);
+		// The chunk sections are rebuilt with the current light, which may not be the tracked one,
+		// like when this light source joined or left a cluster, so the next update rebuilds them again.
+		this.lambdynlights$litChunkSections.invalidateFootprints();
+	}
+
+	@Override
+	public void lambdynlights$clearTrackedChunks(@NotNull LevelRenderer renderer) {
+		this.lambdynlights$scheduleTrackedChunksRebuild(renderer);
+		// Forgets the lit chunk sections along with their footprints, otherwise once enabled again at the same position
+		// this light source would find the same footprints, schedule nothing and stay invisible.
+		if (this.lambdynlights$litChunkSections != null)
+			this.lambdynlights$litChunkSections.clear();
 	}
 }
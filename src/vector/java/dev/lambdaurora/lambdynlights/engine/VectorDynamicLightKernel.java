@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2024 LambdAurora <email@lambdaurora.dev>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the Lambda License. For more information,
+ * see the LICENSE file.
+ */
+
+package dev.lambdaurora.lambdynlights.engine;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Represents the dynamic light kernel vectorized using the Vector API, which evaluates several light sources at once.
+ * <p>
+ * The squared distances and the radius test are vectorized, only the light sources within the radius then go through
+ * the falloff table, so both kernels produce the exact same results.
+ * <p>
+ * This class must only be loaded through {@link DynamicLightKernel#create()}, which checks the Vector API is available.
+ *
+ * @author LambdAurora
+ * @version 3.3.0
+ * @since 3.3.0
+ */
+final class VectorDynamicLightKernel implements DynamicLightKernel {
+	private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+	@Override
+	public int maxDynamicLightLevel(
+			int x, int y, int z,
+			int[] sourcesX, int[] sourcesY, int[] sourcesZ, int[] luminance, int[] radiiSquared, long[] inverseRadiiSquared,
+			int start, int end,
+			FalloffTable falloff,
+			int currentLevel
+	) {
+		int i = start;
+		int vectorEnd = start + SPECIES.loopBound(end - start);
+
+		if (i < vectorEnd) {
+			var positionX = IntVector.broadcast(SPECIES, x);
+			var positionY = IntVector.broadcast(SPECIES, y);
+			var positionZ = IntVector.broadcast(SPECIES, z);
+
+			for (; i < vectorEnd; i += SPECIES.length()) {
+				// The light sources are sorted by descending luminance, the next ones can't give more light than their luminance.
+				if (luminance[i] << 4 <= currentLevel) return currentLevel;
+
+				var dx = positionX.sub(IntVector.fromArray(SPECIES, sourcesX, i));
+				var dy = positionY.sub(IntVector.fromArray(SPECIES, sourcesY, i));
+				var dz = positionZ.sub(IntVector.fromArray(SPECIES, sourcesZ, i));
+				var distanceSquared = dx.mul(dx).add(dy.mul(dy)).add(dz.mul(dz));
+
+				long inRange = distanceSquared.compare(VectorOperators.LE, IntVector.fromArray(SPECIES, radiiSquared, i)).toLong();
+
+				while (inRange != 0) {
+					int lane = Long.numberOfTrailingZeros(inRange);
+					inRange &= inRange - 1;
+
+					int source = i + lane;
+					int relativeDistanceSquared = FalloffTable.relativeDistanceSquared(distanceSquared.lane(lane), inverseRadiiSquared[source]);
+					currentLevel = Math.max(currentLevel, falloff.level(luminance[source], relativeDistanceSquared));
+				}
+			}
+		}
+
+		return SCALAR.maxDynamicLightLevel(x, y, z,
+				sourcesX, sourcesY, sourcesZ, luminance, radiiSquared, inverseRadiiSquared,
+				i, end,
+				falloff,
+				currentLevel
+		);
+	}
+}